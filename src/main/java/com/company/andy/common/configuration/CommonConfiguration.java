@@ -6,7 +6,9 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.resilience.annotation.EnableResilientMethods;
+import tools.jackson.databind.ObjectMapper;
 import tools.jackson.databind.PropertyNamingStrategies;
+import tools.jackson.databind.cfg.MapperBuilder;
 
 import static com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility.ANY;
 import static com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility.NONE;
@@ -31,7 +33,12 @@ public class CommonConfiguration {
 
     @Bean
     public JsonMapperBuilderCustomizer jsonMapperBuilderCustomizer() {
-        return builder -> builder
+        return CommonConfiguration::configureMapper;
+    }
+
+    // Shared by all mappers including the ones for binary formats(e.g. Smile for Kafka), so that they serialize objects the same way
+    public static <M extends ObjectMapper, B extends MapperBuilder<M, B>> B configureMapper(B builder) {
+        return builder
                 .propertyNamingStrategy(LOWER_CAMEL_CASE)
                 .changeDefaultVisibility(it -> it.withVisibility(ALL, NONE).withVisibility(FIELD, ANY))
                 .changeDefaultPropertyInclusion(it -> it.withValueInclusion(ALWAYS))
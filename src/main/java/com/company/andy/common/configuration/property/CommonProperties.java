@@ -1,9 +1,79 @@
 package com.company.andy.common.configuration.property;
 
+import com.company.andy.common.event.DomainEventWireFormat;
+import com.company.andy.common.event.consume.ConsumingEventRetention;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
 import org.springframework.validation.annotation.Validated;
 
+import java.time.Duration;
+
 @Validated
 @ConfigurationProperties("common")
-public record CommonProperties(boolean limitRate) {
+public record CommonProperties(boolean limitRate,
+                               @NotNull @DefaultValue("JSON") DomainEventWireFormat eventWireFormat,
+                               @Valid @DefaultValue KafkaProducer kafkaProducer,
+                               @Valid @DefaultValue EventPublish eventPublish,
+                               @Valid @DefaultValue EventConsume eventConsume,
+                               @Valid @DefaultValue EventListenerScaling eventListenerScaling,
+                               @Valid @DefaultValue EventHouseKeeping eventHouseKeeping) {
+
+    // eventWireFormat is the format domain events are published in, consumers decode records of all formats by their content type header,
+    // so switch consumers to a version supporting the format before switching producers to it
+
+    // Throughput profile of the Kafka producer used for publishing domain events,
+    // defaults favor throughput while keeping per-partition ordering (idempotence with max 5 in-flight requests),
+    // each value only applies when the corresponding "spring.kafka.producer.*" property is not set
+    public record KafkaProducer(@NotNull @DefaultValue("20ms") Duration linger,
+                                @Min(1) @DefaultValue("131072") int batchSize,
+                                @Pattern(regexp = "none|gzip|snappy|lz4|zstd") @DefaultValue("lz4") String compression,
+                                @DefaultValue("true") boolean idempotence,
+                                @Min(1) @Max(5) @DefaultValue("5") int maxInFlight) {
+    }
+
+    // How staged domain events are published from the outbox,
+    // shards must be the same on all nodes, otherwise events of the same aggregate may be published by different nodes at the same time,
+    // directHandoff sends events right from the change stream on the node that staged them, see DomainEventPublishHandoff,
+    // maxTransactionLifetime must not be less than transactionLifetimeLimitSeconds of MongoDB(60s by default),
+    // otherwise events of long transactions may be taken over by DomainEventPublishJob while still being handed off
+    public record EventPublish(@Min(1) @Max(64) @DefaultValue("1") int shards,
+                               @DefaultValue("false") boolean directHandoff,
+                               @NotNull @DefaultValue("60s") Duration maxTransactionLifetime) {
+    }
+
+    // How events are consumed from the messaging middleware,
+    // batchListener receives all events of one poll together and checks duplication for them in bulk, see EventConsumer.consumeBatch(),
+    // parallelByAggregate further consumes events of different aggregates within a batch concurrently,
+    // retention decides how event payloads are kept in the consuming-event collection,
+    // groupTransactionalHandlers runs adjacent transactional handlers of an event in one transaction instead of one transaction per handler
+    public record EventConsume(@DefaultValue("false") boolean batchListener,
+                               @DefaultValue("false") boolean parallelByAggregate,
+                               @NotNull @DefaultValue("FULL") ConsumingEventRetention retention,
+                               @DefaultValue("false") boolean groupTransactionalHandlers) {
+    }
+
+    // How the concurrency of the domain event listener follows consumer lag, see DomainEventListenerConcurrencyScaler,
+    // the listener starts with minConcurrency, concurrency beyond the number of partitions has no effect
+    public record EventListenerScaling(@DefaultValue("false") boolean enabled,
+                                       @Min(1) @DefaultValue("3") int minConcurrency,
+                                       @Min(1) @Max(64) @DefaultValue("12") int maxConcurrency,
+                                       @Min(1) @DefaultValue("1000") long scaleUpLag,
+                                       @Min(0) @DefaultValue("10") long scaleDownLag,
+                                       @NotNull @DefaultValue("2m") Duration cooldown) {
+    }
+
+    // How old domain events are removed by DomainEventHouseKeepingJob,
+    // events are removed in chunks with a pause in between to keep replication lag low,
+    // a house keeping run over all collections stops after maxDuration and the remaining events are left for the next run,
+    // maxDuration must leave a margin to the lock duration of the run, see DomainEventJobScheduler
+    public record EventHouseKeeping(@Min(1) @DefaultValue("100") int retentionDays,
+                                    @Min(1) @Max(10000) @DefaultValue("1000") int chunkSize,
+                                    @NotNull @DefaultValue("200ms") Duration pauseBetweenChunks,
+                                    @NotNull @DefaultValue("15m") Duration maxDuration) {
+    }
 }
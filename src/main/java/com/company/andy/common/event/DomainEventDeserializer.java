@@ -0,0 +1,47 @@
+package com.company.andy.common.event;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import tools.jackson.databind.ObjectMapper;
+
+import static com.company.andy.common.event.DomainEventWireFormat.SMILE;
+import static com.company.andy.common.utils.Constants.KAFKA_CONTENT_TYPE_HEADER;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+// Deserializes domain events in any DomainEventWireFormat according to the content type header of each record,
+// so that records in different formats can coexist in the same topic while producers are switching format
+
+public class DomainEventDeserializer implements Deserializer<DomainEvent> {
+    private final ObjectMapper jsonMapper;
+    private final ObjectMapper smileMapper;
+
+    public DomainEventDeserializer(ObjectMapper jsonMapper, ObjectMapper smileMapper) {
+        this.jsonMapper = jsonMapper;
+        this.smileMapper = smileMapper;
+    }
+
+    @Override
+    public DomainEvent deserialize(String topic, byte[] data) {
+        return deserialize(topic, null, data);
+    }
+
+    @Override
+    public DomainEvent deserialize(String topic, Headers headers, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+
+        ObjectMapper mapper = DomainEventWireFormat.ofContentType(lastHeader(headers, KAFKA_CONTENT_TYPE_HEADER)) == SMILE
+                ? this.smileMapper : this.jsonMapper;
+        return mapper.readValue(data, DomainEvent.class); // The concrete event class is resolved by the "type" property
+    }
+
+    private static String lastHeader(Headers headers, String key) {
+        if (headers == null) {
+            return null;
+        }
+        Header header = headers.lastHeader(key);
+        return header == null || header.value() == null ? null : new String(header.value(), UTF_8);
+    }
+}
@@ -1,42 +1,115 @@
 package com.company.andy.common.event;
 
+import com.company.andy.common.configuration.property.CommonProperties;
+import com.company.andy.common.configuration.property.CommonProperties.EventHouseKeeping;
 import com.mongodb.client.result.DeleteResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.resilience.annotation.Retryable;
 import org.springframework.stereotype.Component;
 
+import java.time.Instant;
+import java.util.List;
+
 import static com.company.andy.common.event.consume.ConsumingEvent.Fields.consumedAt;
+import static com.company.andy.common.event.consume.ConsumingEventPayload.Fields.storedAt;
 import static com.company.andy.common.event.publish.PublishingDomainEvent.Fields.raisedAt;
 import static com.company.andy.common.utils.Constants.CONSUMING_EVENT_COLLECTION;
+import static com.company.andy.common.utils.Constants.CONSUMING_EVENT_PAYLOAD_COLLECTION;
+import static com.company.andy.common.utils.Constants.MONGO_ID;
 import static com.company.andy.common.utils.Constants.PUBLISHING_EVENT_COLLECTION;
 import static java.time.Instant.now;
 import static java.time.temporal.ChronoUnit.DAYS;
+import static org.springframework.data.domain.Sort.Direction.ASC;
+import static org.springframework.data.domain.Sort.by;
 import static org.springframework.data.mongodb.core.query.Criteria.where;
 
 // This house keeping job removes old domain events in DB both for publishing and consuming side, freeing more spaces for new events
+// Events are removed oldest first in chunks of ids with a pause in between, so that a large backlog does not spike replication lag,
+// all removals of one run(retries included) share the same deadline, so that a run never outlasts its distributed lock,
+// removal stops when reaching the deadline, the next run simply continues with the remaining old events
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class DomainEventHouseKeepingJob {
     private final MongoTemplate mongoTemplate;
+    private final CommonProperties commonProperties;
+    private final MeterRegistry meterRegistry;
 
     @Retryable(multiplier = 3, maxRetries = 3)
-    public void removeOldPublishingDomainEventsFromMongo(int days) {
+    public void removeOldPublishingDomainEventsFromMongo(int days, Instant deadline) {
         log.info("Start remove old publishing domain events from mongodb.");
-        Query query = Query.query(where(raisedAt).lt(now().minus(days, DAYS)));
-        DeleteResult result = mongoTemplate.remove(query, PUBLISHING_EVENT_COLLECTION);
-        log.info("Removed {} old publishing domain events from mongodb which are more than {} days old.", result.getDeletedCount(), days);
+        long count = removeInChunks(PUBLISHING_EVENT_COLLECTION, raisedAt, days, deadline);
+        log.info("Removed {} old publishing domain events from mongodb which are more than {} days old.", count, days);
     }
 
     @Retryable(multiplier = 3, maxRetries = 3)
-    public void removeOldConsumingDomainEventsFromMongo(int days) {
+    public void removeOldConsumingDomainEventsFromMongo(int days, Instant deadline) {
         log.info("Start remove old consuming domain events from mongodb.");
-        Query query = Query.query(where(consumedAt).lt(now().minus(days, DAYS)));
-        DeleteResult result = mongoTemplate.remove(query, CONSUMING_EVENT_COLLECTION);
-        log.info("Removed {} old consuming domain events from mongodb which are more than {} days old.", result.getDeletedCount(), days);
+        long count = removeInChunks(CONSUMING_EVENT_COLLECTION, consumedAt, days, deadline);
+        log.info("Removed {} old consuming domain events from mongodb which are more than {} days old.", count, days);
+    }
+
+    @Retryable(multiplier = 3, maxRetries = 3)
+    public void removeOldConsumingEventPayloadsFromMongo(int days, Instant deadline) {
+        log.info("Start remove old consuming event payloads from mongodb.");
+        long count = removeInChunks(CONSUMING_EVENT_PAYLOAD_COLLECTION, storedAt, days, deadline);
+        log.info("Removed {} old consuming event payloads from mongodb which are more than {} days old.", count, days);
+    }
+
+    private long removeInChunks(String collectionName, String timeField, int days, Instant deadline) {
+        EventHouseKeeping houseKeeping = this.commonProperties.eventHouseKeeping();
+        Instant before = now().minus(days, DAYS);
+        Counter removedCounter = Counter.builder("domain.event.housekeeping.removed")
+                .description("Number of old domain events removed by house keeping")
+                .tag("collection", collectionName)
+                .register(this.meterRegistry);
+        Counter chunkCounter = Counter.builder("domain.event.housekeeping.chunks")
+                .description("Number of chunks processed by house keeping")
+                .tag("collection", collectionName)
+                .register(this.meterRegistry);
+
+        long removed = 0;
+        while (true) {
+            if (now().isAfter(deadline)) {
+                log.warn("House keeping of [{}] reached deadline of this run, remaining old documents are left for the next run.",
+                        collectionName);
+                return removed;
+            }
+
+            Query idQuery = Query.query(where(timeField).lt(before))
+                    .with(by(ASC, timeField))
+                    .limit(houseKeeping.chunkSize());
+            idQuery.fields().include(MONGO_ID);
+            List<Object> ids = this.mongoTemplate.find(idQuery, Document.class, collectionName).stream()
+                    .map(document -> document.get(MONGO_ID))
+                    .toList();
+            if (ids.isEmpty()) {
+                return removed;
+            }
+
+            DeleteResult result = this.mongoTemplate.remove(Query.query(where(MONGO_ID).in(ids)), collectionName);
+            removed += result.getDeletedCount();
+            removedCounter.increment(result.getDeletedCount());
+            chunkCounter.increment();
+            log.debug("Removed {} old documents from [{}], {} in total for this run.", result.getDeletedCount(), collectionName, removed);
+
+            if (ids.size() < houseKeeping.chunkSize()) {
+                return removed;
+            }
+
+            try {
+                Thread.sleep(houseKeeping.pauseBetweenChunks());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return removed;
+            }
+        }
     }
 }
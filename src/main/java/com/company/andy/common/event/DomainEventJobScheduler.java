@@ -1,23 +1,36 @@
 package com.company.andy.common.event;
 
+import com.company.andy.common.configuration.property.CommonProperties;
+import com.company.andy.common.event.publish.DomainEventOutboxMetrics;
 import com.company.andy.common.event.publish.DomainEventPublishJob;
 import com.company.andy.common.model.actor.SystemActor;
 import com.company.andy.common.tracing.ActorMdcSupport;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.time.Instant;
+
 import static com.company.andy.common.model.actor.SystemActor.createJobSystemActor;
+import static java.time.Duration.ofMinutes;
+import static java.time.Instant.now;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static net.javacrumbs.shedlock.core.LockAssert.assertLocked;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class DomainEventJobScheduler {
+    private static final String REMOVE_OLD_DOMAIN_EVENTS_LOCK_AT_MOST_FOR = "PT60M";
+    private static final Duration REMOVE_OLD_DOMAIN_EVENTS_LOCK_MARGIN = ofMinutes(5); // For retry back-offs and the last chunk in progress
     private final DomainEventPublishJob domainEventPublishJob;
     private final DomainEventHouseKeepingJob domainEventHouseKeepingJob;
+    private final DomainEventOutboxMetrics domainEventOutboxMetrics;
+    private final CommonProperties commonProperties;
 
     // Runs every 5 minutes to publish staged domain events in case the real time publishing mechanism fails
     // This job should not use @SchedulerLock as DomainEventPublisher.publishStagedDomainEvents() already uses an internal distributed lock
@@ -28,25 +41,51 @@ public class DomainEventJobScheduler {
         ActorMdcSupport.runWithMdc(actor, () -> domainEventPublishJob.publishStagedDomainEvents(100));
     }
 
+    // Outbox gauges are refreshed regularly instead of querying DB on every metrics scrape, runs on all nodes as it's read only
+    @Scheduled(fixedDelay = 30, initialDelay = 30, timeUnit = SECONDS)
+    public void refreshOutboxMetrics() {
+        domainEventOutboxMetrics.refresh();
+    }
+
+    // The whole house keeping run must end before its lock expires, otherwise another node may start house keeping at the same time
+    @PostConstruct
+    void checkHouseKeepingMaxDuration() {
+        Duration maxDuration = commonProperties.eventHouseKeeping().maxDuration();
+        Duration lockAtMostFor = Duration.parse(REMOVE_OLD_DOMAIN_EVENTS_LOCK_AT_MOST_FOR);
+        if (maxDuration.plus(REMOVE_OLD_DOMAIN_EVENTS_LOCK_MARGIN).compareTo(lockAtMostFor) > 0) {
+            throw new IllegalStateException("common.event-house-keeping.max-duration must not be more than "
+                                            + lockAtMostFor.minus(REMOVE_OLD_DOMAIN_EVENTS_LOCK_MARGIN) + ".");
+        }
+    }
+
     // PublishingDomainEvent and ConsumingEvent are temporary and should be removed regularly
-    @Scheduled(cron = "0 10 2 1 * ?")
-    @SchedulerLock(name = "removeOldDomainEvents", lockAtMostFor = "PT60M", lockAtLeastFor = "PT1M")
+    // Runs daily so that each run only removes one day's worth of events in chunks, all collections share one deadline
+    @Scheduled(cron = "0 10 2 * * ?")
+    @SchedulerLock(name = "removeOldDomainEvents", lockAtMostFor = REMOVE_OLD_DOMAIN_EVENTS_LOCK_AT_MOST_FOR, lockAtLeastFor = "PT1M")
     public void removeOldDomainEvents() {
         assertLocked();
 
+        int retentionDays = commonProperties.eventHouseKeeping().retentionDays();
+        Instant deadline = now().plus(commonProperties.eventHouseKeeping().maxDuration());
         SystemActor actor = createJobSystemActor("removeOldDomainEvents");
         ActorMdcSupport.runWithMdc(actor, () -> {
             try {
-                domainEventHouseKeepingJob.removeOldPublishingDomainEventsFromMongo(100);
+                domainEventHouseKeepingJob.removeOldPublishingDomainEventsFromMongo(retentionDays, deadline);
             } catch (Throwable t) {
                 log.error("Failed remove old publishing domain events from mongo.", t);
             }
 
             try {
-                domainEventHouseKeepingJob.removeOldConsumingDomainEventsFromMongo(100);
+                domainEventHouseKeepingJob.removeOldConsumingDomainEventsFromMongo(retentionDays, deadline);
             } catch (Throwable t) {
                 log.error("Failed remove old consuming domain events from mongo.", t);
             }
+
+            try {
+                domainEventHouseKeepingJob.removeOldConsumingEventPayloadsFromMongo(retentionDays, deadline);
+            } catch (Throwable t) {
+                log.error("Failed remove old consuming event payloads from mongo.", t);
+            }
         });
     }
 }
@@ -0,0 +1,50 @@
+package com.company.andy.common.event;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+import tools.jackson.databind.ObjectMapper;
+
+import static com.company.andy.common.event.DomainEventWireFormat.JSON;
+import static com.company.andy.common.utils.Constants.KAFKA_CONTENT_TYPE_HEADER;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.springframework.kafka.support.mapping.AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME;
+
+// Serializes domain events into the configured DomainEventWireFormat, with headers telling consumers how to decode them,
+// byte arrays(e.g. raw records failed to be deserialized and re-published to the dead letter topic) are passed through as is
+
+public class DomainEventSerializer implements Serializer<Object> {
+    private final ObjectMapper objectMapper;
+    private final DomainEventWireFormat format;
+
+    public DomainEventSerializer(ObjectMapper objectMapper, DomainEventWireFormat format) {
+        this.objectMapper = objectMapper;
+        this.format = format;
+    }
+
+    @Override
+    public byte[] serialize(String topic, Object data) {
+        return serialize(topic, null, data);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, Object data) {
+        if (data == null) {
+            return null;
+        }
+
+        if (data instanceof byte[] bytes) {
+            return bytes;
+        }
+
+        if (headers != null) {
+            headers.remove(KAFKA_CONTENT_TYPE_HEADER).add(KAFKA_CONTENT_TYPE_HEADER, this.format.contentType().getBytes(UTF_8));
+
+            // Consumers of earlier versions decode with JacksonJsonDeserializer which requires the type id header of JacksonJsonSerializer,
+            // keep writing it in JSON format so that they can still consume during a rolling deployment
+            if (this.format == JSON) {
+                headers.remove(DEFAULT_CLASSID_FIELD_NAME).add(DEFAULT_CLASSID_FIELD_NAME, data.getClass().getName().getBytes(UTF_8));
+            }
+        }
+        return this.objectMapper.writeValueAsBytes(data);
+    }
+}
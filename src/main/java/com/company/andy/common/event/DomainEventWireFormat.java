@@ -0,0 +1,29 @@
+package com.company.andy.common.event;
+
+import java.util.Arrays;
+
+// Formats of domain events on the messaging middleware, carried by the content type header of each record,
+// consumers decode records by their own header, so producers can switch format without coordinating with consumers
+
+public enum DomainEventWireFormat {
+    JSON("application/json"),
+    SMILE("application/x-jackson-smile"); // Binary JSON of Jackson, smaller and faster to parse than JSON
+
+    private final String contentType;
+
+    DomainEventWireFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String contentType() {
+        return contentType;
+    }
+
+    // Records without content type are produced before the header was introduced, they are all in JSON
+    public static DomainEventWireFormat ofContentType(String contentType) {
+        return Arrays.stream(values())
+                .filter(format -> format.contentType.equals(contentType))
+                .findFirst()
+                .orElse(JSON);
+    }
+}
@@ -1,12 +1,17 @@
 package com.company.andy.common.event;
 
 import com.company.andy.common.configuration.profile.DisableForIT;
-import com.company.andy.common.event.publish.DomainEventPublishJob;
+import com.company.andy.common.configuration.property.CommonProperties;
+import com.company.andy.common.event.publish.ChangeStreamResumeTokenDao;
+import com.company.andy.common.event.publish.DomainEventPublishHandoff;
+import com.company.andy.common.event.publish.DomainEventPublishTrigger;
 import com.company.andy.common.event.publish.PublishingDomainEvent;
+import com.mongodb.MongoException;
 import com.mongodb.client.model.changestream.ChangeStreamDocument;
 import com.mongodb.client.model.changestream.OperationType;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.common.TopicPartition;
+import org.bson.BsonDocument;
 import org.bson.Document;
 import org.springframework.boot.kafka.autoconfigure.DefaultKafkaConsumerFactoryCustomizer;
 import org.springframework.boot.kafka.autoconfigure.DefaultKafkaProducerFactoryCustomizer;
@@ -18,22 +23,36 @@ import org.springframework.data.mongodb.core.messaging.ChangeStreamRequest;
 import org.springframework.data.mongodb.core.messaging.DefaultMessageListenerContainer;
 import org.springframework.data.mongodb.core.messaging.MessageListener;
 import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.Subscription;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
 import org.springframework.kafka.listener.DefaultErrorHandler;
 import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
-import org.springframework.kafka.support.serializer.JacksonJsonDeserializer;
-import org.springframework.kafka.support.serializer.JacksonJsonSerializer;
 import org.springframework.util.backoff.ExponentialBackOff;
 import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.dataformat.smile.SmileMapper;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.company.andy.common.configuration.CommonConfiguration.configureMapper;
+import static com.company.andy.common.event.DomainEventWireFormat.SMILE;
+import static com.company.andy.common.utils.Constants.KAFKA_DLT_SUFFIX;
 import static com.company.andy.common.utils.Constants.PUBLISHING_EVENT_COLLECTION;
+import static org.apache.kafka.clients.producer.ProducerConfig.BATCH_SIZE_CONFIG;
+import static org.apache.kafka.clients.producer.ProducerConfig.COMPRESSION_TYPE_CONFIG;
+import static org.apache.kafka.clients.producer.ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG;
+import static org.apache.kafka.clients.producer.ProducerConfig.LINGER_MS_CONFIG;
+import static org.apache.kafka.clients.producer.ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION;
 
 @Slf4j
 @DisableForIT
 @Configuration(proxyBeanMethods = false)
 public class EventConfiguration {
-    private static final String dltSuffix = "-dlt";
+    private static final int CHANGE_STREAM_FATAL_ERROR = 280;
+    private static final int CHANGE_STREAM_HISTORY_LOST = 286;
 
     // Automatically triggered on domain event insertion in MongoDB,
     // then publish staged domain events to messaging middleware
@@ -41,37 +60,123 @@ public class EventConfiguration {
     MessageListenerContainer mongoDomainEventChangeStreamListenerContainer(
             MongoTemplate mongoTemplate,
             TaskExecutor taskExecutor,
-            DomainEventPublishJob domainEventPublishJob) {
+            DomainEventPublishTrigger domainEventPublishTrigger,
+            DomainEventPublishHandoff domainEventPublishHandoff,
+            ChangeStreamResumeTokenDao changeStreamResumeTokenDao) {
         MessageListenerContainer container = new DefaultMessageListenerContainer(mongoTemplate, taskExecutor);
 
-        // Get notified on DomainEvent insertion in MongoDB, then publish staged domain events to messaging middleware
-        container.register(ChangeStreamRequest.builder(
+        // Resume from where the change stream stopped last time, so that events staged while the application was down
+        // are published right after startup instead of waiting for DomainEventJobScheduler
+        registerDomainEventChangeStream(container,
+                domainEventPublishTrigger,
+                domainEventPublishHandoff,
+                changeStreamResumeTokenDao,
+                changeStreamResumeTokenDao.resumeToken(PUBLISHING_EVENT_COLLECTION));
+        container.start();
+        return container;
+    }
+
+    private static void registerDomainEventChangeStream(MessageListenerContainer container,
+                                                        DomainEventPublishTrigger domainEventPublishTrigger,
+                                                        DomainEventPublishHandoff domainEventPublishHandoff,
+                                                        ChangeStreamResumeTokenDao changeStreamResumeTokenDao,
+                                                        BsonDocument resumeToken) {
+        // Get notified on DomainEvent insertion in MongoDB, then publish staged domain events to messaging middleware,
+        // notifications of a burst of insertions are coalesced into a single publish pass,
+        // or the inserted events are sent directly without re-querying if direct handoff is enabled,
+        // errors are handled inside the listener, as the container only reports them to the error handler and keeps the cursor running,
+        // the resume token is only saved after the notification is handled, so a restart after a failed notification resumes from before it,
+        // events of failed notifications are still published by DomainEventJobScheduler in any case
+        ChangeStreamRequest.ChangeStreamRequestBuilder<PublishingDomainEvent> builder = ChangeStreamRequest.builder(
                         (MessageListener<ChangeStreamDocument<Document>, PublishingDomainEvent>) message -> {
-                            domainEventPublishJob.publishStagedDomainEvents(100);
+                            try {
+                                if (domainEventPublishHandoff.isEnabled()) {
+                                    domainEventPublishHandoff.handoff(message.getBody());
+                                } else {
+                                    domainEventPublishTrigger.trigger();
+                                }
+                            } catch (Throwable t) {
+                                log.error("Error happened while handling change stream [{}] notification.", PUBLISHING_EVENT_COLLECTION, t);
+                                return;
+                            }
+                            try {
+                                changeStreamResumeTokenDao.save(PUBLISHING_EVENT_COLLECTION, message.getRaw().getResumeToken());
+                            } catch (Throwable t) {
+                                log.warn("Failed to save resume token of change stream [{}].", PUBLISHING_EVENT_COLLECTION, t);
+                            }
                         })
                 .collection(PUBLISHING_EVENT_COLLECTION)
-                .filter(new Document("$match", new Document("operationType", OperationType.INSERT.getValue())))
-                .build(), PublishingDomainEvent.class);
-        container.start();
-        return container;
+                .filter(new Document("$match", new Document("operationType", OperationType.INSERT.getValue())));
+        if (resumeToken != null) {
+            builder.resumeAfter(resumeToken);
+        }
+
+        AtomicReference<Subscription> subscription = new AtomicReference<>();
+        AtomicBoolean restarted = new AtomicBoolean(false);
+        subscription.set(container.register(builder.build(), PublishingDomainEvent.class, ex -> {
+            log.error("Error happened in change stream [{}].", PUBLISHING_EVENT_COLLECTION, ex);
+
+            // The resume token is no longer in the oplog, so discard it and restart the change stream from now on,
+            // the failed subscription is removed first to never have two subscriptions, events staged in the gap are picked up by an immediate publish pass
+            if (resumeToken != null && isResumeFailure(ex) && restarted.compareAndSet(false, true)) {
+                Subscription failed = subscription.get();
+                if (failed != null) {
+                    container.remove(failed);
+                }
+                changeStreamResumeTokenDao.remove(PUBLISHING_EVENT_COLLECTION);
+                registerDomainEventChangeStream(container, domainEventPublishTrigger, domainEventPublishHandoff, changeStreamResumeTokenDao, null);
+                domainEventPublishTrigger.trigger();
+            }
+        }));
+    }
+
+    private static boolean isResumeFailure(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoException mongoException
+                && (mongoException.getCode() == CHANGE_STREAM_HISTORY_LOST || mongoException.getCode() == CHANGE_STREAM_FATAL_ERROR)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     @Bean
-    public DefaultKafkaProducerFactoryCustomizer defaultKafkaProducerFactoryCustomizer(JsonMapper jsonMapper) {
-        return producerFactory -> producerFactory.setValueSerializer(new JacksonJsonSerializer<>(jsonMapper));
+    public DefaultKafkaProducerFactoryCustomizer defaultKafkaProducerFactoryCustomizer(JsonMapper jsonMapper,
+                                                                                        CommonProperties commonProperties) {
+        CommonProperties.KafkaProducer profile = commonProperties.kafkaProducer();
+        return producerFactory -> {
+            DomainEventWireFormat format = commonProperties.eventWireFormat();
+            producerFactory.setValueSerializer(new DomainEventSerializer(format == SMILE ? smileMapper() : jsonMapper, format));
+
+            // Let the producer batch and compress records, so that an outbox backlog is published in large requests rather than one by one,
+            // the profile only provides defaults, properties explicitly set via "spring.kafka.producer.*" take precedence
+            Map<String, Object> defaults = new HashMap<>(Map.of(
+                    LINGER_MS_CONFIG, (int) profile.linger().toMillis(),
+                    BATCH_SIZE_CONFIG, profile.batchSize(),
+                    COMPRESSION_TYPE_CONFIG, profile.compression(),
+                    ENABLE_IDEMPOTENCE_CONFIG, profile.idempotence(),
+                    MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, profile.maxInFlight()));
+            defaults.keySet().removeAll(producerFactory.getConfigurationProperties().keySet());
+            producerFactory.updateConfigs(defaults);
+        };
     }
 
     @Bean
     public DefaultKafkaConsumerFactoryCustomizer defaultKafkaConsumerFactoryCustomizer(JsonMapper jsonMapper) {
         return consumerFactory -> {
-            JacksonJsonDeserializer valueDeserializer = new JacksonJsonDeserializer<>(jsonMapper);
-            valueDeserializer.addTrustedPackages("*");
+            // Always able to decode all formats regardless of common.event-wire-format, so that producers can switch format at any time
+            DomainEventDeserializer valueDeserializer = new DomainEventDeserializer(jsonMapper, smileMapper());
 
-            // Must wrap the JsonDeserializer into an ErrorHandlingDeserializer, otherwise deserialization error will result in endless message retry
+            // Must wrap the DomainEventDeserializer into an ErrorHandlingDeserializer, otherwise deserialization error will result in endless message retry
             consumerFactory.setValueDeserializer(new ErrorHandlingDeserializer<>(valueDeserializer));
         };
     }
 
+    private static SmileMapper smileMapper() {
+        return configureMapper(SmileMapper.builder()).build();
+    }
+
+    // Only used by listeners without retry topics such as the batch listener, as it blocks the partition while backing off
     @Bean
     public DefaultErrorHandler defaultErrorHandler(KafkaTemplate<String, Object> kafkaTemplate) {
         ExponentialBackOff backOff = new ExponentialBackOff(500L, 2);
@@ -79,7 +184,7 @@ public class EventConfiguration {
         DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(
                 kafkaTemplate,
                 (record, ex) -> {
-                    String dlt = record.topic() + dltSuffix;
+                    String dlt = record.topic() + KAFKA_DLT_SUFFIX;
                     log.error("Error consuming message[key={}], moving to dead letter topic[{}].", record.key(), dlt, ex);
                     return new TopicPartition(dlt, record.partition());
                 }
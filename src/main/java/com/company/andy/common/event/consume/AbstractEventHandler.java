@@ -27,6 +27,7 @@ public abstract class AbstractEventHandler<T> {
 
     public int priority() {
         // Smaller value means higher priority and will be handled first
+        // Should always return the same value as it's only read once when the event routing is built
         return 0;
     }
 
@@ -35,7 +36,11 @@ public abstract class AbstractEventHandler<T> {
     }
 
     public final boolean canHandle(Object event) {
-        return this.eventClass.isAssignableFrom(event.getClass());
+        return canHandle(event.getClass());
+    }
+
+    public final boolean canHandle(Class<?> eventClass) {
+        return this.eventClass.isAssignableFrom(eventClass);
     }
 
     public final void handle(T event) {
@@ -15,6 +15,7 @@ import static lombok.AccessLevel.PRIVATE;
 
 // Wrapper for all consumed events, it not only wraps domain events but also wraps all types of consumed events
 // You may add more information(such as if the event is redelivered etc.) if required, but should not be coupled to a specific messaging middleware
+// How the event itself is stored is decided by ConsumingEventRetention, "event" for FULL and "compressedEvent" for COMPRESSED
 
 @Getter
 @FieldNameConstants
@@ -27,6 +28,7 @@ public class ConsumingEvent {
     private String handler;
     private Instant consumedAt;
     private Object event;
+    private byte[] compressedEvent;
 
     public ConsumingEvent(String eventId, Object event) {
         requireNonBlank(eventId, "Event ID must not be blank.");
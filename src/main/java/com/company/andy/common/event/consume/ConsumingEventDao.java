@@ -1,43 +1,226 @@
 package com.company.andy.common.event.consume;
 
+import com.company.andy.common.configuration.property.CommonProperties;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.mongodb.bulk.BulkWriteResult;
 import com.mongodb.client.result.UpdateResult;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import tools.jackson.databind.json.JsonMapper;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import static com.company.andy.common.event.consume.ConsumingEventRetention.REFERENCE;
+import static com.company.andy.common.utils.Constants.MONGO_ID;
+import static java.lang.Boolean.TRUE;
+import static java.time.Duration.ofMinutes;
+import static java.util.stream.Collectors.toSet;
+import static org.apache.commons.collections4.CollectionUtils.isEmpty;
+import static org.springframework.data.mongodb.core.BulkOperations.BulkMode.UNORDERED;
 import static org.springframework.data.mongodb.core.query.Criteria.where;
 import static org.springframework.data.mongodb.core.query.Query.query;
 
 // Upon consuming, record the event in DB to avoid duplicated event consuming.
+// Recently consumed [eventId, handler] pairs are also kept in an in-process near-cache to short-circuit obvious redeliveries,
+// the unique index in DB is still the source of truth as the near-cache only knows pairs consumed by this node
+// How much of the event itself is kept in DB is configured by ConsumingEventRetention
 
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class ConsumingEventDao {
+    private static final int DUPLICATE_KEY_ERROR_CODE = 11000;
+    private static final int NEAR_CACHE_MAX_SIZE = 100_000;
+    private static final Duration NEAR_CACHE_TTL = ofMinutes(30);
     private final MongoTemplate mongoTemplate;
+    private final JsonMapper jsonMapper;
+    private final ConsumingEventRetention retention;
+    private final Cache<String, Boolean> consumedNearCache;
+    private final Counter nearCacheHitCounter;
+    private final Counter databaseCheckCounter;
+
+    public ConsumingEventDao(MongoTemplate mongoTemplate,
+                             JsonMapper jsonMapper,
+                             CommonProperties commonProperties,
+                             MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.jsonMapper = jsonMapper;
+        this.retention = commonProperties.eventConsume().retention();
+        this.consumedNearCache = CacheBuilder.newBuilder()
+                .maximumSize(NEAR_CACHE_MAX_SIZE)
+                .expireAfterWrite(NEAR_CACHE_TTL)
+                .build();
+        this.nearCacheHitCounter = Counter.builder("event.consume.dedup.check")
+                .description("Number of duplication checks of consuming events")
+                .tag("source", "near-cache")
+                .register(meterRegistry);
+        this.databaseCheckCounter = Counter.builder("event.consume.dedup.check")
+                .description("Number of duplication checks of consuming events")
+                .tag("source", "database")
+                .register(meterRegistry);
+    }
 
     // return "true" means this event has never been consumed before
     public boolean markEventAsConsumedByHandler(ConsumingEvent consumingEvent, AbstractEventHandler<?> handler) {
         // The duplication is checked based on [handler name + eventId],
         // namely if the same event is consumed by the same handler before,
         // then it is a duplicated consuming and should be ignored
-        Query query = query(where(ConsumingEvent.Fields.eventId).is(consumingEvent.getEventId())
-                .and(ConsumingEvent.Fields.handler).is(handler.getName()));
-
-        Update update = new Update()
-                .setOnInsert(ConsumingEvent.Fields.type, consumingEvent.getType())
-                .setOnInsert(ConsumingEvent.Fields.event, consumingEvent.getEvent())
-                .setOnInsert(ConsumingEvent.Fields.consumedAt, consumingEvent.getConsumedAt());
+        String key = consumedKey(consumingEvent.getEventId(), handler.getName());
+        if (isInNearCache(key)) {
+            return false;
+        }
 
         UpdateResult result = this.mongoTemplate.update(ConsumingEvent.class)
-                .matching(query)
-                .apply(update)
+                .matching(consumedQuery(consumingEvent.getEventId(), handler.getName()))
+                .apply(consumedUpdate(consumingEvent))
                 .upsert();
 
-        return result.getMatchedCount() == 0;
+        if (result.getMatchedCount() == 0) {
+            putIntoNearCacheAfterCommit(Set.of(key));
+            return true;
+        }
+        this.consumedNearCache.put(key, TRUE);
+        return false;
+    }
+
+    // Bulk version of markEventAsConsumedByHandler() for multiple [event, handler] pairs in a single round trip,
+    // return keys(see consumedKey()) of the pairs that have never been consumed before
+    public Set<String> markEventsAsConsumedByHandlers(Map<ConsumingEvent, List<AbstractEventHandler<?>>> eventHandlers) {
+        List<String> keys = new ArrayList<>();
+        BulkOperations bulkOperations = this.mongoTemplate.bulkOps(UNORDERED, ConsumingEvent.class);
+        eventHandlers.forEach((consumingEvent, handlers) -> handlers.forEach(handler -> {
+            String key = consumedKey(consumingEvent.getEventId(), handler.getName());
+            if (!isInNearCache(key)) {
+                keys.add(key);
+                bulkOperations.upsert(consumedQuery(consumingEvent.getEventId(), handler.getName()), consumedUpdate(consumingEvent));
+            }
+        }));
+        if (keys.isEmpty()) {
+            return Set.of();
+        }
+
+        BulkWriteResult result;
+        try {
+            result = bulkOperations.execute();
+        } catch (BulkOperationException e) {
+            // Duplicated key errors happen when the same pairs are consumed concurrently elsewhere, they are treated as already consumed
+            throwIfNotDuplicateKeyErrors(e);
+            result = e.getResult();
+        }
+
+        Set<String> newlyMarkedKeys = result.getUpserts().stream()
+                .map(upsert -> keys.get(upsert.getIndex()))
+                .collect(toSet());
+        keys.forEach(key -> this.consumedNearCache.put(key, TRUE));
+        return newlyMarkedKeys;
+    }
+
+    // Reverts markEventsAsConsumedByHandlers() for the given [event, handler] pairs
+    public void unmarkEventsAsConsumedByHandlers(Map<ConsumingEvent, List<AbstractEventHandler<?>>> eventHandlers) {
+        List<Query> queries = new ArrayList<>();
+        eventHandlers.forEach((consumingEvent, handlers) -> handlers.forEach(handler -> {
+            this.consumedNearCache.invalidate(consumedKey(consumingEvent.getEventId(), handler.getName()));
+            queries.add(consumedQuery(consumingEvent.getEventId(), handler.getName()));
+        }));
+        if (queries.isEmpty()) {
+            return;
+        }
+
+        this.mongoTemplate.bulkOps(UNORDERED, ConsumingEvent.class).remove(queries).execute();
+    }
+
+    // return keys(see consumedKey()) of the given [event, handler] pairs that have already been consumed, using a single query
+    public Set<String> consumedKeys(Map<ConsumingEvent, List<AbstractEventHandler<?>>> eventHandlers) {
+        Set<String> consumedKeys = new HashSet<>();
+        Set<String> eventIds = new HashSet<>();
+        Set<String> handlerNames = new HashSet<>();
+        eventHandlers.forEach((consumingEvent, handlers) -> handlers.forEach(handler -> {
+            String key = consumedKey(consumingEvent.getEventId(), handler.getName());
+            if (isInNearCache(key)) {
+                consumedKeys.add(key);
+            } else {
+                eventIds.add(consumingEvent.getEventId());
+                handlerNames.add(handler.getName());
+            }
+        }));
+        if (eventIds.isEmpty()) {
+            return consumedKeys;
+        }
+
+        Query query = query(where(ConsumingEvent.Fields.eventId).in(eventIds).and(ConsumingEvent.Fields.handler).in(handlerNames));
+        query.fields().include(ConsumingEvent.Fields.eventId, ConsumingEvent.Fields.handler);
+        this.mongoTemplate.find(query, ConsumingEvent.class)
+                .forEach(it -> consumedKeys.add(consumedKey(it.getEventId(), it.getHandler())));
+        return consumedKeys;
+    }
+
+    // Stores payloads of the events once for all their handlers, only needed for ConsumingEventRetention.REFERENCE
+    public void savePayloads(List<ConsumingEvent> consumingEvents) {
+        if (this.retention != REFERENCE || isEmpty(consumingEvents)) {
+            return;
+        }
+
+        BulkOperations bulkOperations = this.mongoTemplate.bulkOps(UNORDERED, ConsumingEventPayload.class);
+        Instant now = Instant.now();
+        consumingEvents.forEach(consumingEvent -> bulkOperations.upsert(
+                query(where(MONGO_ID).is(consumingEvent.getEventId())),
+                new Update()
+                        .setOnInsert(ConsumingEventPayload.Fields.type, consumingEvent.getType())
+                        .setOnInsert(ConsumingEventPayload.Fields.event, consumingEvent.getEvent())
+                        .setOnInsert(ConsumingEventPayload.Fields.storedAt, now)));
+        try {
+            bulkOperations.execute();
+        } catch (BulkOperationException e) {
+            throwIfNotDuplicateKeyErrors(e); // The same payload is stored concurrently elsewhere
+        }
+    }
+
+    public static String consumedKey(String eventId, String handlerName) {
+        return eventId + ":" + handlerName;
+    }
+
+    private boolean isInNearCache(String key) {
+        if (this.consumedNearCache.getIfPresent(key) != null) {
+            this.nearCacheHitCounter.increment();
+            return true;
+        }
+        this.databaseCheckCounter.increment();
+        return false;
+    }
+
+    // A newly inserted mark may still be rolled back together with the handler's transaction,
+    // so it's only put into the near-cache after the transaction commits
+    private void putIntoNearCacheAfterCommit(Set<String> keys) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            keys.forEach(key -> this.consumedNearCache.put(key, TRUE));
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                keys.forEach(key -> consumedNearCache.put(key, TRUE));
+            }
+        });
     }
 
     public boolean exists(String eventId) {
@@ -49,4 +232,38 @@ public class ConsumingEventDao {
         Query query = query(where(ConsumingEvent.Fields.eventId).is(eventId).and(ConsumingEvent.Fields.handler).is(handler.getName()));
         return this.mongoTemplate.exists(query, ConsumingEvent.class);
     }
+
+    private static Query consumedQuery(String eventId, String handlerName) {
+        return query(where(ConsumingEvent.Fields.eventId).is(eventId)
+                .and(ConsumingEvent.Fields.handler).is(handlerName));
+    }
+
+    private Update consumedUpdate(ConsumingEvent consumingEvent) {
+        Update update = new Update()
+                .setOnInsert(ConsumingEvent.Fields.type, consumingEvent.getType())
+                .setOnInsert(ConsumingEvent.Fields.consumedAt, consumingEvent.getConsumedAt());
+        switch (this.retention) {
+            case FULL -> update.setOnInsert(ConsumingEvent.Fields.event, consumingEvent.getEvent());
+            case COMPRESSED -> update.setOnInsert(ConsumingEvent.Fields.compressedEvent, compress(consumingEvent.getEvent()));
+            case ID_ONLY, REFERENCE -> {
+            }
+        }
+        return update;
+    }
+
+    private byte[] compress(Object event) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(this.jsonMapper.writeValueAsBytes(event));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void throwIfNotDuplicateKeyErrors(BulkOperationException e) {
+        if (e.getErrors().stream().anyMatch(error -> error.getCode() != DUPLICATE_KEY_ERROR_CODE)) {
+            throw e;
+        }
+    }
 }
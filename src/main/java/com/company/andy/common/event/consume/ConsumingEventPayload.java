@@ -0,0 +1,27 @@
+package com.company.andy.common.event.consume;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldNameConstants;
+import org.springframework.data.annotation.TypeAlias;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+import static com.company.andy.common.utils.Constants.CONSUMING_EVENT_PAYLOAD_COLLECTION;
+import static lombok.AccessLevel.PRIVATE;
+
+// Payload of a consumed event shared by all its ConsumingEvent records, only used with ConsumingEventRetention.REFERENCE,
+// the "id" is the event ID
+
+@Getter
+@FieldNameConstants
+@NoArgsConstructor(access = PRIVATE)
+@Document(CONSUMING_EVENT_PAYLOAD_COLLECTION)
+@TypeAlias(CONSUMING_EVENT_PAYLOAD_COLLECTION)
+public class ConsumingEventPayload {
+    private String id;
+    private String type;
+    private Object event;
+    private Instant storedAt;
+}
@@ -0,0 +1,9 @@
+package com.company.andy.common.event.consume;
+
+// How the payload of a consumed event is kept in ConsumingEvent records, which are mainly used for deduplication
+public enum ConsumingEventRetention {
+    FULL, // The whole event is stored in every ConsumingEvent record, namely once per handler
+    ID_ONLY, // No payload is stored, only the event ID, type and handler are kept
+    REFERENCE, // The event is stored only once in ConsumingEventPayload, and referenced by event ID from ConsumingEvent records
+    COMPRESSED // The event is stored as gzip compressed JSON in every ConsumingEvent record
+}
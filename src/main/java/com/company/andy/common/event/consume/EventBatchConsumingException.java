@@ -0,0 +1,16 @@
+package com.company.andy.common.event.consume;
+
+import lombok.Getter;
+
+// Thrown when consuming a batch of events fails, "failedIndex" is the index of the first failed event in the batch,
+// events before it have been consumed successfully and events after it have not been consumed
+
+@Getter
+public class EventBatchConsumingException extends RuntimeException {
+    private final int failedIndex;
+
+    public EventBatchConsumingException(String message, int failedIndex, Throwable cause) {
+        super(message, cause);
+        this.failedIndex = failedIndex;
+    }
+}
@@ -1,17 +1,36 @@
 package com.company.andy.common.event.consume;
 
+import com.company.andy.common.configuration.property.CommonProperties;
 import com.company.andy.common.event.DomainEvent;
 import com.company.andy.common.event.consume.external.ExternalEvent;
+import io.micrometer.context.ContextSnapshot;
+import io.micrometer.context.ContextSnapshotFactory;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
+import static com.company.andy.common.event.consume.ConsumingEventDao.consumedKey;
 import static java.util.Comparator.comparingInt;
+import static org.apache.commons.collections4.CollectionUtils.isEmpty;
 import static org.apache.commons.collections4.CollectionUtils.isNotEmpty;
 import static org.springframework.transaction.TransactionDefinition.PROPAGATION_REQUIRES_NEW;
 
@@ -22,16 +41,41 @@ import static org.springframework.transaction.TransactionDefinition.PROPAGATION_
 @Slf4j
 @Component
 public class EventConsumer {
+    static final int MARK_CHUNK_SIZE = 20;
+    private static final ContextSnapshotFactory CONTEXT_SNAPSHOT_FACTORY = ContextSnapshotFactory.builder().build();
     private final List<AbstractEventHandler<?>> handlers;
+    private final ClassValue<List<AbstractEventHandler<?>>> handlersByEventClass;
     private final ConsumingEventDao consumingEventDao;
     private final TransactionTemplate transactionTemplate;
+    private final TaskExecutor taskExecutor;
+    private final CommonProperties commonProperties;
+    private final EventConsumingMetrics metrics;
+    private final boolean groupTransactionalHandlers;
 
     public EventConsumer(
             List<AbstractEventHandler<?>> handlers,
             ConsumingEventDao consumingEventDao,
-            PlatformTransactionManager transactionManager) {
+            PlatformTransactionManager transactionManager,
+            TaskExecutor taskExecutor,
+            CommonProperties commonProperties,
+            MeterRegistry meterRegistry) {
         this.handlers = handlers;
+        this.handlersByEventClass = new ClassValue<>() {
+            // Routing table from event class to its handlers sorted by priority,
+            // computed only once per event class, so dispatching an event does not need to check all handlers
+            @Override
+            protected List<AbstractEventHandler<?>> computeValue(Class<?> eventClass) {
+                return EventConsumer.this.handlers.stream()
+                        .filter(handler -> handler.canHandle(eventClass))
+                        .sorted(comparingInt(AbstractEventHandler::priority))
+                        .toList();
+            }
+        };
         this.consumingEventDao = consumingEventDao;
+        this.taskExecutor = taskExecutor;
+        this.commonProperties = commonProperties;
+        this.metrics = new EventConsumingMetrics(meterRegistry);
+        this.groupTransactionalHandlers = commonProperties.eventConsume().groupTransactionalHandlers();
         this.transactionTemplate = new TransactionTemplate(transactionManager);
         this.transactionTemplate.setPropagationBehavior(PROPAGATION_REQUIRES_NEW);
     }
@@ -46,33 +90,107 @@ public class EventConsumer {
         this.consume(new ConsumingEvent(event.getEventId(), event));
     }
 
+    // Entry point for consuming a batch of domain events, such as all events received in one poll from the messaging middleware,
+    // events are handled one by one in order with the same priority and idempotency semantics as consumeDomainEvent(),
+    // but the duplication checks against ConsumingEventDao are done for the whole batch in bulk,
+    // consuming stops at the first failed event and EventBatchConsumingException is thrown with the index of that event,
+    // if "common.event-consume.parallel-by-aggregate" is enabled, events of different aggregates are consumed in parallel,
+    // and the index is of the earliest failed event, events after it may have been consumed and will be skipped as duplicates when redelivered
+    public void consumeBatch(List<DomainEvent> events) {
+        if (isEmpty(events)) {
+            return;
+        }
+
+        // The same event may appear more than once in one batch(e.g. redelivered), only its first copy is consumed,
+        // later copies are left as null at their indexes and skipped, so that neither handling nor unmarking is done twice for one event
+        List<ConsumingEvent> consumingEvents = new ArrayList<>(events.size());
+        Map<ConsumingEvent, List<AbstractEventHandler<?>>> eventHandlers = new LinkedHashMap<>();
+        Set<String> eventIds = new HashSet<>();
+        events.forEach(event -> {
+            if (!eventIds.add(event.getId())) {
+                log.debug("Skip duplicated event[{}:{}] in batch.", event.getType(), event.getId());
+                consumingEvents.add(null);
+                return;
+            }
+            ConsumingEvent consumingEvent = new ConsumingEvent(event.getId(), event);
+            consumingEvents.add(consumingEvent);
+            eventHandlers.put(consumingEvent, handlersFor(consumingEvent));
+        });
+
+        this.consumingEventDao.savePayloads(eventHandlers.entrySet().stream()
+                .filter(entry -> entry.getValue().stream().anyMatch(handler -> !handler.isIdempotent()))
+                .map(Map.Entry::getKey)
+                .toList());
+
+        // Already consumed [event, handler] pairs of the whole batch are filtered out in one bulk read,
+        // non-transactional handlers are then marked in bulk chunk by chunk right before each chunk is handled(see markChunkAsConsumed()),
+        // transactional handlers must be marked inside their own transactions
+        Set<String> consumedKeys = this.consumingEventDao.consumedKeys(filterHandlers(eventHandlers, handler -> !handler.isIdempotent()));
+        Set<String> newlyMarkedKeys = ConcurrentHashMap.newKeySet();
+
+        List<FailedEvent> failedEvents = new ArrayList<>();
+        if (this.commonProperties.eventConsume().parallelByAggregate()) {
+            // Events of the same aggregate are consumed in order, while different aggregates are consumed concurrently on virtual threads,
+            // with the listener thread's observation context and MDC, so that tracing and logging stay the same as in sequential consuming
+            ContextSnapshot contextSnapshot = CONTEXT_SNAPSHOT_FACTORY.captureAll();
+            Map<String, String> mdc = MDC.getCopyOfContextMap();
+            Map<String, List<Integer>> aggregateIndexes = new LinkedHashMap<>();
+            for (int index = 0; index < events.size(); index++) {
+                aggregateIndexes.computeIfAbsent(events.get(index).getArId(), _ -> new ArrayList<>()).add(index);
+            }
+            aggregateIndexes.values().stream()
+                    .map(indexes -> CompletableFuture.supplyAsync(withContext(contextSnapshot, mdc,
+                            () -> consumeInOrder(consumingEvents, indexes, eventHandlers, newlyMarkedKeys, consumedKeys)), this.taskExecutor))
+                    .toList()
+                    .forEach(future -> Optional.ofNullable(future.join()).ifPresent(failedEvents::add));
+        } else {
+            List<Integer> indexes = IntStream.range(0, consumingEvents.size()).boxed().toList();
+            Optional.ofNullable(consumeInOrder(consumingEvents, indexes, eventHandlers, newlyMarkedKeys, consumedKeys)).ifPresent(failedEvents::add);
+        }
+
+        if (isNotEmpty(failedEvents)) {
+            // Events not attempted are not handled, so revert their marks to make them consumable when redelivered
+            Map<ConsumingEvent, List<AbstractEventHandler<?>>> unhandled = new LinkedHashMap<>();
+            failedEvents.stream().flatMap(it -> it.notAttemptedIndexes().stream()).map(consumingEvents::get)
+                    .filter(Objects::nonNull)
+                    .forEach(it -> unhandled.put(it, eventHandlers.get(it).stream()
+                            .filter(handler -> newlyMarkedKeys.contains(consumedKey(it.getEventId(), handler.getName())))
+                            .toList()));
+            this.consumingEventDao.unmarkEventsAsConsumedByHandlers(unhandled);
+
+            // Report the earliest failed event, so that only events before it are treated as done(e.g. offsets committed)
+            FailedEvent earliest = failedEvents.stream().min(comparingInt(FailedEvent::index)).get();
+            throw new EventBatchConsumingException(earliest.cause().getMessage(), earliest.index(), earliest.cause());
+        }
+    }
+
     // You may add more consumeXxxEvent(XxxEvent event) here, and inside the method, call consume(ConsumingEvent event)
 
     private void consume(ConsumingEvent event) {
+        if (event != null && handlersFor(event).stream().anyMatch(handler -> !handler.isIdempotent())) {
+            this.consumingEventDao.savePayloads(List.of(event));
+        }
+        this.consume(event, this::handleIdempotently);
+    }
+
+    private void consume(ConsumingEvent event, BiConsumer<AbstractEventHandler<?>, ConsumingEvent> handling) {
         if (event == null) {
             return;
         }
 
         log.debug("Start consume event[{}:{}].", event.getType(), event.getEventId());
         Set<String> errorHandlers = new HashSet<>();
-        this.handlers.stream()
-                .filter(handler -> handler.canHandle(event.getEvent()))
-                .sorted(comparingInt(AbstractEventHandler::priority))
-                .forEach(handler -> {
-                    try {
-                        if (handler.isTransactional()) {
-                            // TransactionTemplate is used instead of @Transactional here,
-                            // because besides the handler() method, we also need to cover consumingEventDao.markEventAsConsumedByHandler() inside the whole transaction
-                            this.transactionTemplate.executeWithoutResult(status -> handleIdempotently(handler, event));
-                        } else {
-                            handleIdempotently(handler, event);
-                        }
-                    } catch (Throwable ex) {
-                        log.error("Error while handling event[{}:{}] by [{}]: ",
-                                event.getType(), event.getEventId(), handler.getName(), ex);
-                        errorHandlers.add(handler.getName());
-                    }
-                });
+        List<AbstractEventHandler<?>> handlers = handlersFor(event);
+        int index = 0;
+        while (index < handlers.size()) {
+            int groupEnd = this.groupTransactionalHandlers ? transactionalGroupEnd(handlers, index) : index + 1;
+            if (groupEnd - index > 1) {
+                handleInOneTransaction(handlers.subList(index, groupEnd), event, handling, errorHandlers);
+            } else {
+                handle(handlers.get(index), event, handling, errorHandlers);
+            }
+            index = groupEnd;
+        }
 
         if (isNotEmpty(errorHandlers)) {
             throw new RuntimeException(
@@ -80,12 +198,166 @@ public class EventConsumer {
         }
     }
 
+    private void handle(AbstractEventHandler<?> handler,
+                        ConsumingEvent event,
+                        BiConsumer<AbstractEventHandler<?>, ConsumingEvent> handling,
+                        Set<String> errorHandlers) {
+        try {
+            if (handler.isTransactional()) {
+                // TransactionTemplate is used instead of @Transactional here,
+                // because besides the handler() method, we also need to cover consumingEventDao.markEventAsConsumedByHandler() inside the whole transaction
+                this.metrics.recordTransaction(handler, event,
+                        () -> this.transactionTemplate.executeWithoutResult(status -> handling.accept(handler, event)));
+            } else {
+                handling.accept(handler, event);
+            }
+        } catch (Throwable ex) {
+            log.error("Error while handling event[{}:{}] by [{}]: ",
+                    event.getType(), event.getEventId(), handler.getName(), ex);
+            this.metrics.countFailed(handler, event);
+            errorHandlers.add(handler.getName());
+        }
+    }
+
+    // Saves the commit round trips of all but one handler in the group,
+    // MongoDB has no savepoints, so if any handler fails the whole group is rolled back(including the consumed marks),
+    // then the group is retried with one transaction per handler to isolate the failed ones
+    private void handleInOneTransaction(List<AbstractEventHandler<?>> group,
+                                        ConsumingEvent event,
+                                        BiConsumer<AbstractEventHandler<?>, ConsumingEvent> handling,
+                                        Set<String> errorHandlers) {
+        try {
+            this.metrics.recordGroupedTransaction(event,
+                    () -> this.transactionTemplate.executeWithoutResult(status -> group.forEach(handler -> handling.accept(handler, event))));
+        } catch (Throwable ex) {
+            log.warn("Error while handling event[{}:{}] by {} handlers in one transaction, fallback to one transaction per handler: ",
+                    event.getType(), event.getEventId(), group.size(), ex);
+            group.forEach(handler -> handle(handler, event, handling, errorHandlers));
+        }
+    }
+
+    // Only adjacent transactional handlers are grouped, so that handlers still run in order of priority
+    private static int transactionalGroupEnd(List<AbstractEventHandler<?>> handlers, int start) {
+        int end = start;
+        while (end < handlers.size() && handlers.get(end).isTransactional()) {
+            end++;
+        }
+        return Math.max(end, start + 1);
+    }
+
+    // Consumes events at the given indexes one by one, stops at the first failed one, return null if all succeeded
+    private FailedEvent consumeInOrder(List<ConsumingEvent> consumingEvents,
+                                       List<Integer> indexes,
+                                       Map<ConsumingEvent, List<AbstractEventHandler<?>>> eventHandlers,
+                                       Set<String> newlyMarkedKeys,
+                                       Set<String> consumedKeys) {
+        for (int i = 0; i < indexes.size(); i++) {
+            int index = indexes.get(i);
+            if (i % MARK_CHUNK_SIZE == 0) {
+                try {
+                    markChunkAsConsumed(indexes.subList(i, Math.min(i + MARK_CHUNK_SIZE, indexes.size())).stream()
+                            .map(consumingEvents::get)
+                            .filter(Objects::nonNull)
+                            .toList(), eventHandlers, newlyMarkedKeys, consumedKeys);
+                } catch (Throwable t) {
+                    return new FailedEvent(index, t, indexes.subList(i, indexes.size()));
+                }
+            }
+
+            try {
+                this.consume(consumingEvents.get(index),
+                        (handler, consumingEvent) -> handleInBatch(handler, consumingEvent, newlyMarkedKeys, consumedKeys));
+            } catch (Throwable t) {
+                return new FailedEvent(index, t, indexes.subList(i + 1, indexes.size()));
+            }
+        }
+        return null;
+    }
+
+    private static <T> Supplier<T> withContext(ContextSnapshot contextSnapshot, Map<String, String> mdc, Supplier<T> supplier) {
+        return () -> {
+            Map<String, String> previousMdc = MDC.getCopyOfContextMap();
+            try (ContextSnapshot.Scope _ = contextSnapshot.setThreadLocals()) {
+                if (mdc != null) {
+                    MDC.setContextMap(mdc);
+                }
+                return supplier.get();
+            } finally {
+                if (previousMdc != null) {
+                    MDC.setContextMap(previousMdc);
+                } else {
+                    MDC.clear();
+                }
+            }
+        };
+    }
+
+    // Marks are written right before a chunk is handled rather than for the whole batch up front,
+    // so if the process is killed in the middle of a batch, at most one chunk of marked but not handled events is skipped when redelivered
+    private void markChunkAsConsumed(List<ConsumingEvent> chunk,
+                                     Map<ConsumingEvent, List<AbstractEventHandler<?>>> eventHandlers,
+                                     Set<String> newlyMarkedKeys,
+                                     Set<String> consumedKeys) {
+        Map<ConsumingEvent, List<AbstractEventHandler<?>>> chunkHandlers = new LinkedHashMap<>();
+        chunk.forEach(event -> chunkHandlers.put(event, eventHandlers.get(event).stream()
+                .filter(handler -> !handler.isIdempotent() && !handler.isTransactional())
+                .filter(handler -> !consumedKeys.contains(consumedKey(event.getEventId(), handler.getName())))
+                .toList()));
+        newlyMarkedKeys.addAll(this.consumingEventDao.markEventsAsConsumedByHandlers(chunkHandlers));
+    }
+
+    private List<AbstractEventHandler<?>> handlersFor(ConsumingEvent event) {
+        return this.handlersByEventClass.get(event.getEvent().getClass());
+    }
+
     private void handleIdempotently(AbstractEventHandler<?> handler, ConsumingEvent consumingEvent) {
-        if (handler.isIdempotent() || this.consumingEventDao.markEventAsConsumedByHandler(consumingEvent, handler)) {
-            ((AbstractEventHandler<Object>) handler).handle(consumingEvent.getEvent());
+        if (handler.isIdempotent()
+            || this.metrics.recordDedup(handler, consumingEvent, () -> this.consumingEventDao.markEventAsConsumedByHandler(consumingEvent, handler))) {
+            invoke(handler, consumingEvent);
         } else {
-            log.warn("Event[{}:{}] has already been consumed by handler[{}], skip handling.",
-                    consumingEvent.getEventId(), consumingEvent.getType(), handler.getName());
+            logSkipped(handler, consumingEvent);
         }
     }
+
+    // Same as handleIdempotently(), but relies on the results of the bulk duplication checks done by consumeBatch()
+    private void handleInBatch(AbstractEventHandler<?> handler,
+                               ConsumingEvent consumingEvent,
+                               Set<String> newlyMarkedKeys,
+                               Set<String> consumedKeys) {
+        String key = consumedKey(consumingEvent.getEventId(), handler.getName());
+        if (handler.isIdempotent()) {
+            invoke(handler, consumingEvent);
+        } else if (!handler.isTransactional()) {
+            if (newlyMarkedKeys.contains(key)) {
+                invoke(handler, consumingEvent);
+            } else {
+                logSkipped(handler, consumingEvent);
+            }
+        } else if (consumedKeys.contains(key)) {
+            logSkipped(handler, consumingEvent);
+        } else {
+            handleIdempotently(handler, consumingEvent);
+        }
+    }
+
+    private void invoke(AbstractEventHandler<?> handler, ConsumingEvent consumingEvent) {
+        this.metrics.recordHandle(handler, consumingEvent, () -> ((AbstractEventHandler<Object>) handler).handle(consumingEvent.getEvent()));
+    }
+
+    private void logSkipped(AbstractEventHandler<?> handler, ConsumingEvent consumingEvent) {
+        this.metrics.countSkipped(handler, consumingEvent);
+        log.warn("Event[{}:{}] has already been consumed by handler[{}], skip handling.",
+                consumingEvent.getEventId(), consumingEvent.getType(), handler.getName());
+    }
+
+    private static Map<ConsumingEvent, List<AbstractEventHandler<?>>> filterHandlers(
+            Map<ConsumingEvent, List<AbstractEventHandler<?>>> eventHandlers,
+            Predicate<AbstractEventHandler<?>> predicate) {
+        Map<ConsumingEvent, List<AbstractEventHandler<?>>> result = new LinkedHashMap<>();
+        eventHandlers.forEach((event, handlers) -> result.put(event, handlers.stream().filter(predicate).toList()));
+        return result;
+    }
+
+    private record FailedEvent(int index, Throwable cause, List<Integer> notAttemptedIndexes) {
+    }
 }
@@ -0,0 +1,85 @@
+package com.company.andy.common.event.consume;
+
+import com.company.andy.common.event.DomainEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Meter.MeterProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.util.ClassUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+// Meters of event consuming used by EventConsumer, tagged by handler and event type so that slow or failing handlers can be told apart,
+// the end to end latency is from DomainEvent.raisedAt to the completion of each handler, hence also covers publishing and messaging
+
+class EventConsumingMetrics {
+    private static final String GROUPED_HANDLERS = "grouped";
+    private final MeterProvider<Timer> handleTimer;
+    private final MeterProvider<Timer> transactionTimer;
+    private final MeterProvider<Timer> dedupTimer;
+    private final MeterProvider<Timer> endToEndTimer;
+    private final MeterProvider<Counter> skippedCounter;
+    private final MeterProvider<Counter> failedCounter;
+
+    EventConsumingMetrics(MeterRegistry meterRegistry) {
+        this.handleTimer = Timer.builder("event.consume.handle")
+                .description("Time spent in event handlers")
+                .withRegistry(meterRegistry);
+        this.transactionTimer = Timer.builder("event.consume.transaction")
+                .description("Time of transactions of transactional event handlers including commit")
+                .withRegistry(meterRegistry);
+        this.dedupTimer = Timer.builder("event.consume.dedup.upsert")
+                .description("Time of marking events as consumed by handlers")
+                .withRegistry(meterRegistry);
+        this.endToEndTimer = Timer.builder("event.consume.end.to.end.latency")
+                .description("Time from domain events being raised to being handled")
+                .publishPercentileHistogram()
+                .withRegistry(meterRegistry);
+        this.skippedCounter = Counter.builder("event.consume.skipped")
+                .description("Number of duplicated events skipped by handlers")
+                .withRegistry(meterRegistry);
+        this.failedCounter = Counter.builder("event.consume.failed")
+                .description("Number of events failed to be handled")
+                .withRegistry(meterRegistry);
+    }
+
+    void recordHandle(AbstractEventHandler<?> handler, ConsumingEvent event, Runnable handling) {
+        Tags tags = tags(handler, event);
+        this.handleTimer.withTags(tags).record(handling);
+        if (event.getEvent() instanceof DomainEvent domainEvent && domainEvent.getRaisedAt() != null) {
+            this.endToEndTimer.withTags(tags).record(Duration.between(domainEvent.getRaisedAt(), Instant.now()));
+        }
+    }
+
+    void recordTransaction(AbstractEventHandler<?> handler, ConsumingEvent event, Runnable transaction) {
+        this.transactionTimer.withTags(tags(handler, event)).record(transaction);
+    }
+
+    void recordGroupedTransaction(ConsumingEvent event, Runnable transaction) {
+        this.transactionTimer.withTags(tags(GROUPED_HANDLERS, event)).record(transaction);
+    }
+
+    <T> T recordDedup(AbstractEventHandler<?> handler, ConsumingEvent event, Supplier<T> dedup) {
+        return this.dedupTimer.withTags(tags(handler, event)).record(dedup);
+    }
+
+    void countSkipped(AbstractEventHandler<?> handler, ConsumingEvent event) {
+        this.skippedCounter.withTags(tags(handler, event)).increment();
+    }
+
+    void countFailed(AbstractEventHandler<?> handler, ConsumingEvent event) {
+        this.failedCounter.withTags(tags(handler, event)).increment();
+    }
+
+    private static Tags tags(AbstractEventHandler<?> handler, ConsumingEvent event) {
+        return tags(ClassUtils.getUserClass(handler).getSimpleName(), event);
+    }
+
+    private static Tags tags(String handler, ConsumingEvent event) {
+        return Tags.of("handler", handler, "type", Objects.toString(event.getType(), "unknown"));
+    }
+}
@@ -0,0 +1,133 @@
+package com.company.andy.common.event.consume.infrastructure;
+
+import com.company.andy.common.configuration.profile.DisableForIT;
+import com.company.andy.common.configuration.property.CommonProperties;
+import com.company.andy.common.configuration.property.CommonProperties.EventListenerScaling;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.Metric;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static com.company.andy.common.event.consume.infrastructure.SpringKafkaEventListener.DOMAIN_EVENT_BATCH_LISTENER_ID;
+import static com.company.andy.common.event.consume.infrastructure.SpringKafkaEventListener.DOMAIN_EVENT_LISTENER_ID;
+import static java.time.Instant.EPOCH;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+// Scales the concurrency of the running domain event listener within the configured bounds when "common.event-listener-scaling.enabled",
+// scales up by one consumer when the total lag exceeds scaleUpLag,
+// scales down by one consumer when the lag drops below scaleDownLag and handlers are busy for less than half of the time,
+// changing concurrency restarts the container and hence triggers a rebalance, so changes are at least "cooldown" apart
+
+@Slf4j
+@Component
+@DisableForIT
+public class DomainEventListenerConcurrencyScaler {
+    private static final String RECORDS_LAG_METRIC = "records-lag";
+    private static final double LOW_UTILIZATION = 0.5;
+    private final KafkaListenerEndpointRegistry kafkaListenerEndpointRegistry;
+    private final MeterRegistry meterRegistry;
+    private final EventListenerScaling scaling;
+    private Instant lastScaledAt = EPOCH;
+    private Instant lastCheckedAt = Instant.now();
+    private double lastHandleSeconds;
+
+    public DomainEventListenerConcurrencyScaler(KafkaListenerEndpointRegistry kafkaListenerEndpointRegistry,
+                                                MeterRegistry meterRegistry,
+                                                CommonProperties commonProperties) {
+        this.kafkaListenerEndpointRegistry = kafkaListenerEndpointRegistry;
+        this.meterRegistry = meterRegistry;
+        this.scaling = commonProperties.eventListenerScaling();
+        Stream.of(DOMAIN_EVENT_LISTENER_ID, DOMAIN_EVENT_BATCH_LISTENER_ID).forEach(id ->
+                Gauge.builder("event.consume.listener.concurrency", () -> {
+                            MessageListenerContainer container = this.kafkaListenerEndpointRegistry.getListenerContainer(id);
+                            return container instanceof ConcurrentMessageListenerContainer<?, ?> concurrent && concurrent.isRunning()
+                                    ? concurrent.getConcurrency() : 0;
+                        })
+                        .description("Current concurrency of the domain event listener")
+                        .tag("listener", id)
+                        .register(meterRegistry));
+    }
+
+    @Scheduled(fixedDelay = 30, initialDelay = 60, timeUnit = SECONDS)
+    public void scale() {
+        try {
+            doScale();
+        } catch (Throwable t) {
+            log.warn("Failed to scale concurrency of domain event listener.", t);
+        }
+    }
+
+    private void doScale() {
+        Instant now = Instant.now();
+        double handleSeconds = totalHandleSeconds();
+        double elapsedSeconds = Math.max(1, now.getEpochSecond() - this.lastCheckedAt.getEpochSecond());
+        double busySeconds = handleSeconds - this.lastHandleSeconds;
+        this.lastCheckedAt = now;
+        this.lastHandleSeconds = handleSeconds;
+
+        if (!this.scaling.enabled() || now.isBefore(this.lastScaledAt.plus(this.scaling.cooldown()))) {
+            return;
+        }
+
+        ConcurrentMessageListenerContainer<?, ?> container = runningContainer();
+        if (container == null) {
+            return;
+        }
+
+        int concurrency = container.getConcurrency();
+        long lag = totalLag(container);
+        double utilization = busySeconds / (elapsedSeconds * concurrency);
+        if (lag > this.scaling.scaleUpLag() && concurrency < this.scaling.maxConcurrency()) {
+            changeConcurrency(container, concurrency + 1, lag, utilization);
+        } else if (lag < this.scaling.scaleDownLag() && utilization < LOW_UTILIZATION && concurrency > this.scaling.minConcurrency()) {
+            changeConcurrency(container, concurrency - 1, lag, utilization);
+        }
+    }
+
+    private ConcurrentMessageListenerContainer<?, ?> runningContainer() {
+        return Stream.of(DOMAIN_EVENT_LISTENER_ID, DOMAIN_EVENT_BATCH_LISTENER_ID)
+                .map(this.kafkaListenerEndpointRegistry::getListenerContainer)
+                .filter(container -> container instanceof ConcurrentMessageListenerContainer<?, ?> && container.isRunning())
+                .map(container -> (ConcurrentMessageListenerContainer<?, ?>) container)
+                .findFirst()
+                .orElse(null);
+    }
+
+    private void changeConcurrency(ConcurrentMessageListenerContainer<?, ?> container, int concurrency, long lag, double utilization) {
+        log.info("Change concurrency of [{}] from {} to {} as lag is {} and handler utilization is {}.",
+                container.getListenerId(), container.getConcurrency(), concurrency, lag, String.format("%.2f", utilization));
+        this.lastScaledAt = Instant.now();
+        container.setConcurrency(concurrency);
+        container.stop(container::start); // Concurrency only takes effect after restart
+    }
+
+    // Sum of the lags of all partitions assigned to the consumers of the container
+    private static long totalLag(ConcurrentMessageListenerContainer<?, ?> container) {
+        return (long) container.metrics().values().stream()
+                .flatMap(metrics -> metrics.entrySet().stream())
+                .filter(entry -> RECORDS_LAG_METRIC.equals(entry.getKey().name()))
+                .map(Map.Entry::getValue)
+                .mapToDouble(DomainEventListenerConcurrencyScaler::valueOf)
+                .sum();
+    }
+
+    private static double valueOf(Metric metric) {
+        return metric.metricValue() instanceof Number number && !Double.isNaN(number.doubleValue()) ? number.doubleValue() : 0;
+    }
+
+    // Total time spent in event handlers, measured by EventConsumer
+    private double totalHandleSeconds() {
+        return this.meterRegistry.find("event.consume.handle").timers().stream()
+                .mapToDouble(timer -> timer.totalTime(SECONDS))
+                .sum();
+    }
+}
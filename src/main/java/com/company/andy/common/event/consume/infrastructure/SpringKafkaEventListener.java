@@ -2,13 +2,23 @@ package com.company.andy.common.event.consume.infrastructure;
 
 import com.company.andy.common.configuration.profile.DisableForIT;
 import com.company.andy.common.event.DomainEvent;
+import com.company.andy.common.event.consume.EventBatchConsumingException;
 import com.company.andy.common.event.consume.EventConsumer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.annotation.BackOff;
+import org.springframework.kafka.annotation.DltHandler;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.RetryableTopic;
+import org.springframework.kafka.listener.BatchListenerFailedException;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
+import static com.company.andy.common.utils.Constants.KAFKA_DLT_SUFFIX;
 import static com.company.andy.common.utils.Constants.KAFKA_DOMAIN_EVENT_TOPIC;
+import static org.springframework.kafka.retrytopic.TopicSuffixingStrategy.SUFFIX_WITH_INDEX_VALUE;
 
 // Entry point for receiving events from Kafka
 // This is the only place where event consuming touches Kafka, hence the coupling to Kafka is minimised
@@ -18,16 +28,59 @@ import static com.company.andy.common.utils.Constants.KAFKA_DOMAIN_EVENT_TOPIC;
 @DisableForIT // Disable Kafka Listener for integration tests
 @RequiredArgsConstructor
 public class SpringKafkaEventListener {
+    static final String DOMAIN_EVENT_LISTENER_ID = "domain-event-listener";
+    static final String DOMAIN_EVENT_BATCH_LISTENER_ID = "domain-event-batch-listener";
     private final EventConsumer eventConsumer;
 
     // Listen to domain events which are published by ourselves
-    @KafkaListener(id = "domain-event-listener",
+    // Only one of listenDomainEvent() and listenDomainEvents() is started according to "common.event-consume.batch-listener",
+    // they share the same consumer group so switching between them continues from the committed offsets
+    // Failed events are retried through retry topics with delays of 1s, 10s and 1m before going to the dead letter topic,
+    // so that the main partition keeps flowing instead of blocking on backoff, note that a retried event is consumed out of order,
+    // it is safe to retry the whole event as handlers that already succeeded are skipped by EventConsumer's duplication check
+    @RetryableTopic(attempts = "4",
+            backOff = @BackOff(delay = 1000, multiplier = 10, maxDelay = 60000),
+            retryTopicSuffix = "-retry",
+            dltTopicSuffix = KAFKA_DLT_SUFFIX,
+            topicSuffixingStrategy = SUFFIX_WITH_INDEX_VALUE,
+            autoStartDltHandler = "#{!${common.event-consume.batch-listener:false}}")
+    @KafkaListener(id = DOMAIN_EVENT_LISTENER_ID,
             groupId = "domain-event-listener",
             topics = {KAFKA_DOMAIN_EVENT_TOPIC},
-            concurrency = "3")
+            concurrency = "${common.event-listener-scaling.min-concurrency:3}",
+            autoStartup = "#{!${common.event-consume.batch-listener:false}}")
     public void listenDomainEvent(DomainEvent event) {
         this.eventConsumer.consumeDomainEvent(event);
     }
 
+    // Takes the raw record as events failed to be deserialized also end up here, such events can be replayed later
+    @DltHandler
+    public void handleDeadDomainEvent(ConsumerRecord<String, ?> record) {
+        log.error("Domain event[key={}] failed after all retries, moved to dead letter topic[{}].", record.key(), record.topic());
+    }
+
+    // Receives all domain events of one poll together, which is much faster for catching up a lagging topic
+    // Batch listeners are not supported by retry topics, failures are retried in place by EventConfiguration.defaultErrorHandler()
+    @KafkaListener(id = DOMAIN_EVENT_BATCH_LISTENER_ID,
+            groupId = "domain-event-listener",
+            topics = {KAFKA_DOMAIN_EVENT_TOPIC},
+            concurrency = "${common.event-listener-scaling.min-concurrency:3}",
+            batch = "true",
+            autoStartup = "${common.event-consume.batch-listener:false}")
+    public void listenDomainEvents(List<DomainEvent> events) {
+        // Events failed to be deserialized come as null, consume the ones before it and let the error handler deal with it
+        int nullIndex = events.indexOf(null);
+        try {
+            this.eventConsumer.consumeBatch(nullIndex < 0 ? events : events.subList(0, nullIndex));
+        } catch (EventBatchConsumingException e) {
+            // Tells the error handler to commit events before the failed one, then retry from the failed one
+            throw new BatchListenerFailedException(e.getMessage(), e, e.getFailedIndex());
+        }
+
+        if (nullIndex >= 0) {
+            throw new BatchListenerFailedException("Failed to deserialize domain event.", nullIndex);
+        }
+    }
+
     // You may add more @KafkaListener annotated methods for different topics if needed
 }
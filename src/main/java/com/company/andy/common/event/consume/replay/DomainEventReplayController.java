@@ -0,0 +1,42 @@
+package com.company.andy.common.event.consume.replay;
+
+import com.company.andy.common.configuration.profile.DisableForIT;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+
+import static org.springframework.http.HttpStatus.CREATED;
+
+// For system admins to recover domain events that failed all retries and ended up in the dead letter topic
+
+@DisableForIT
+@Tag(name = "DomainEventReplayController", description = "Domain event replay APIs")
+@Validated
+@RestController
+@RequiredArgsConstructor
+@RequestMapping(value = "/system/domain-event-replays")
+public class DomainEventReplayController {
+    private final DomainEventReplayer domainEventReplayer;
+
+    @Operation(summary = "Start replaying domain events from dead letter topic")
+    @PostMapping
+    @ResponseStatus(CREATED)
+    public DomainEventReplayProgress startReplay(@RequestBody @Valid ReplayDomainEventsCommand command) {
+        return domainEventReplayer.start(command);
+    }
+
+    @Operation(summary = "Get progress of the current replay")
+    @GetMapping("/current")
+    public DomainEventReplayProgress currentReplay() {
+        return domainEventReplayer.progress();
+    }
+
+    @Operation(summary = "Stop the current replay")
+    @DeleteMapping("/current")
+    public DomainEventReplayProgress stopReplay() {
+        return domainEventReplayer.stop();
+    }
+}
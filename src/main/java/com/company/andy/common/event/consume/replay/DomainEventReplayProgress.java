@@ -0,0 +1,27 @@
+package com.company.andy.common.event.consume.replay;
+
+import lombok.Builder;
+
+import java.time.Instant;
+
+// total is the number of records in the dead letter topic to be scanned when the replay started,
+// scanned = replayed + filtered + failed
+
+@Builder
+public record DomainEventReplayProgress(String id,
+                                        Status status,
+                                        long total,
+                                        long scanned,
+                                        long replayed,
+                                        long filtered,
+                                        long failed,
+                                        Instant startedAt,
+                                        Instant finishedAt) {
+
+    public enum Status {
+        RUNNING,
+        COMPLETED,
+        STOPPED,
+        FAILED,
+    }
+}
@@ -0,0 +1,218 @@
+package com.company.andy.common.event.consume.replay;
+
+import com.company.andy.common.configuration.profile.DisableForIT;
+import com.company.andy.common.event.DomainEvent;
+import com.company.andy.common.event.consume.EventConsumer;
+import com.company.andy.common.exception.ServiceException;
+import com.google.common.util.concurrent.RateLimiter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.company.andy.common.event.consume.replay.DomainEventReplayProgress.Status.COMPLETED;
+import static com.company.andy.common.event.consume.replay.DomainEventReplayProgress.Status.FAILED;
+import static com.company.andy.common.event.consume.replay.DomainEventReplayProgress.Status.RUNNING;
+import static com.company.andy.common.event.consume.replay.DomainEventReplayProgress.Status.STOPPED;
+import static com.company.andy.common.exception.ErrorCode.CONFLICT;
+import static com.company.andy.common.exception.ErrorCode.NOT_FOUND;
+import static com.company.andy.common.utils.Constants.KAFKA_DLT_SUFFIX;
+import static com.company.andy.common.utils.Constants.KAFKA_DOMAIN_EVENT_TOPIC;
+import static com.company.andy.common.utils.SnowflakeIdGenerator.newSnowflakeId;
+import static java.time.Duration.ofSeconds;
+import static java.util.stream.Collectors.toMap;
+import static org.apache.kafka.clients.consumer.ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG;
+
+// Re-feeds domain events in the dead letter topic through EventConsumer, one replay at a time on the whole node,
+// records are read with a standalone consumer that neither joins a consumer group nor commits offsets,
+// so a replay always scans from the requested time up to the end of the topic when the replay started,
+// replays are safe to rerun as handlers that already consumed an event are skipped by ConsumingEventDao,
+// the throughput is capped by ReplayDomainEventsCommand.maxPerSecond() to avoid overwhelming MongoDB after an incident
+
+@Slf4j
+@Component
+@DisableForIT
+@RequiredArgsConstructor
+public class DomainEventReplayer {
+    private static final String DLT_TOPIC = KAFKA_DOMAIN_EVENT_TOPIC + KAFKA_DLT_SUFFIX;
+    private static final String REPLAYER_GROUP_ID = "domain-event-replayer";
+    private static final Duration POLL_TIMEOUT = ofSeconds(1);
+    private final ConsumerFactory<?, ?> consumerFactory;
+    private final EventConsumer eventConsumer;
+    private final TaskExecutor taskExecutor;
+    private volatile Replay currentReplay;
+
+    public synchronized DomainEventReplayProgress start(ReplayDomainEventsCommand command) {
+        Replay previous = this.currentReplay;
+        if (previous != null && previous.status == RUNNING) {
+            throw new ServiceException(CONFLICT, "A domain event replay is already running.", "replayId", previous.id);
+        }
+
+        Replay replay = new Replay("RPL" + newSnowflakeId(), command);
+        this.currentReplay = replay;
+
+        log.info("Start replaying domain events from [{}] with {}.", DLT_TOPIC, command);
+        this.taskExecutor.execute(() -> run(replay));
+        return replay.progress();
+    }
+
+    public DomainEventReplayProgress progress() {
+        return currentReplayOrThrow().progress();
+    }
+
+    public DomainEventReplayProgress stop() {
+        Replay replay = currentReplayOrThrow();
+        replay.stopRequested = true;
+        return replay.progress();
+    }
+
+    private Replay currentReplayOrThrow() {
+        Replay replay = this.currentReplay;
+        if (replay == null) {
+            throw new ServiceException(NOT_FOUND, "No domain event replay found.");
+        }
+        return replay;
+    }
+
+    private void run(Replay replay) {
+        Properties properties = new Properties();
+        properties.put(ENABLE_AUTO_COMMIT_CONFIG, false);
+        RateLimiter rateLimiter = RateLimiter.create(replay.command.maxPerSecond());
+
+        try (Consumer<?, ?> consumer = this.consumerFactory.createConsumer(REPLAYER_GROUP_ID, null, null, properties)) {
+            List<TopicPartition> partitions = consumer.partitionsFor(DLT_TOPIC).stream()
+                    .map(info -> new TopicPartition(info.topic(), info.partition()))
+                    .toList();
+            consumer.assign(partitions);
+            Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+            seekToRaisedFrom(consumer, partitions, endOffsets, replay.command.raisedFrom());
+            replay.total = partitions.stream().mapToLong(partition -> endOffsets.get(partition) - consumer.position(partition)).sum();
+
+            while (!replay.stopRequested && !reachedEnd(consumer, partitions, endOffsets)) {
+                for (ConsumerRecord<?, ?> record : consumer.poll(POLL_TIMEOUT)) {
+                    if (replay.stopRequested) {
+                        break;
+                    }
+
+                    // Records arrived after the replay started are left for the next replay
+                    if (record.offset() >= endOffsets.get(new TopicPartition(record.topic(), record.partition()))) {
+                        continue;
+                    }
+
+                    replay(record, replay, rateLimiter);
+                }
+            }
+
+            replay.finish(replay.stopRequested ? STOPPED : COMPLETED);
+            log.info("Finished replaying domain events: {}.", replay.progress());
+        } catch (Throwable t) {
+            replay.finish(FAILED);
+            log.error("Error happened while replaying domain events: {}.", replay.progress(), t);
+        }
+    }
+
+    private void replay(ConsumerRecord<?, ?> record, Replay replay, RateLimiter rateLimiter) {
+        // Events failed to be deserialized come as null and can not be replayed
+        if (!(record.value() instanceof DomainEvent event)) {
+            replay.failed.incrementAndGet();
+            log.warn("Skip replaying record[key={}, partition={}, offset={}] which is not a domain event.",
+                    record.key(), record.partition(), record.offset());
+            return;
+        }
+
+        if (!matches(event, replay.command)) {
+            replay.filtered.incrementAndGet();
+            return;
+        }
+
+        rateLimiter.acquire();
+        try {
+            this.eventConsumer.consumeDomainEvent(event);
+            replay.replayed.incrementAndGet();
+        } catch (Throwable t) {
+            replay.failed.incrementAndGet();
+            log.error("Failed to replay domain event[{}].", event.getId(), t);
+        }
+    }
+
+    private static boolean matches(DomainEvent event, ReplayDomainEventsCommand command) {
+        return (CollectionUtils.isEmpty(command.types()) || command.types().contains(event.getType()))
+               && (command.arOrgId() == null || command.arOrgId().equals(event.getArOrgId()))
+               && (command.raisedFrom() == null || !event.getRaisedAt().isBefore(command.raisedFrom()))
+               && (command.raisedTo() == null || event.getRaisedAt().isBefore(command.raisedTo()));
+    }
+
+    // Records are moved to the dead letter topic after they were raised, so records before raisedFrom can be skipped by timestamp
+    private static void seekToRaisedFrom(Consumer<?, ?> consumer,
+                                         List<TopicPartition> partitions,
+                                         Map<TopicPartition, Long> endOffsets,
+                                         Instant raisedFrom) {
+        if (raisedFrom == null) {
+            consumer.seekToBeginning(partitions);
+            return;
+        }
+
+        Map<TopicPartition, OffsetAndTimestamp> offsets = consumer.offsetsForTimes(
+                partitions.stream().collect(toMap(partition -> partition, _ -> raisedFrom.toEpochMilli())));
+        partitions.forEach(partition -> {
+            OffsetAndTimestamp offset = offsets.get(partition);
+            consumer.seek(partition, offset != null ? offset.offset() : endOffsets.get(partition));
+        });
+    }
+
+    private static boolean reachedEnd(Consumer<?, ?> consumer,
+                                      List<TopicPartition> partitions,
+                                      Map<TopicPartition, Long> endOffsets) {
+        return partitions.stream().allMatch(partition -> consumer.position(partition) >= endOffsets.get(partition));
+    }
+
+    private static class Replay {
+        private final String id;
+        private final ReplayDomainEventsCommand command;
+        private final Instant startedAt = Instant.now();
+        private final AtomicLong replayed = new AtomicLong();
+        private final AtomicLong filtered = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private volatile long total;
+        private volatile boolean stopRequested;
+        private volatile DomainEventReplayProgress.Status status = RUNNING;
+        private volatile Instant finishedAt;
+
+        private Replay(String id, ReplayDomainEventsCommand command) {
+            this.id = id;
+            this.command = command;
+        }
+
+        private void finish(DomainEventReplayProgress.Status status) {
+            this.finishedAt = Instant.now();
+            this.status = status;
+        }
+
+        private DomainEventReplayProgress progress() {
+            return DomainEventReplayProgress.builder()
+                    .id(this.id)
+                    .status(this.status)
+                    .total(this.total)
+                    .scanned(this.replayed.get() + this.filtered.get() + this.failed.get())
+                    .replayed(this.replayed.get())
+                    .filtered(this.filtered.get())
+                    .failed(this.failed.get())
+                    .startedAt(this.startedAt)
+                    .finishedAt(this.finishedAt)
+                    .build();
+        }
+    }
+}
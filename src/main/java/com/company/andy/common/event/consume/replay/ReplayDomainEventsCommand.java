@@ -0,0 +1,31 @@
+package com.company.andy.common.event.consume.replay;
+
+import com.company.andy.common.event.DomainEventType;
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Size;
+import lombok.Builder;
+
+import java.time.Instant;
+import java.util.Set;
+
+// Filters are optional, an empty filter replays all events in the dead letter topic
+
+@Builder
+public record ReplayDomainEventsCommand(
+        @Schema(description = "Max number of events replayed per second")
+        @Min(1) @Max(1000) int maxPerSecond,
+
+        @Schema(description = "Only replay events of these types")
+        @Size(max = 50) Set<DomainEventType> types,
+
+        @Schema(description = "Only replay events of this org")
+        @Size(max = 50) String arOrgId,
+
+        @Schema(description = "Only replay events raised at or after this time")
+        Instant raisedFrom,
+
+        @Schema(description = "Only replay events raised before this time")
+        Instant raisedTo) {
+}
@@ -0,0 +1,26 @@
+package com.company.andy.common.event.publish;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldNameConstants;
+import org.springframework.data.annotation.TypeAlias;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+import static com.company.andy.common.utils.Constants.CHANGE_STREAM_RESUME_TOKEN_COLLECTION;
+import static lombok.AccessLevel.PRIVATE;
+
+// Last seen resume token of a MongoDB change stream, the "id" is the name of the change stream,
+// used for resuming the change stream from where it stopped after application restarts
+
+@Getter
+@FieldNameConstants
+@NoArgsConstructor(access = PRIVATE)
+@Document(CHANGE_STREAM_RESUME_TOKEN_COLLECTION)
+@TypeAlias(CHANGE_STREAM_RESUME_TOKEN_COLLECTION)
+public class ChangeStreamResumeToken {
+    private String id;
+    private String token;
+    private Instant savedAt;
+}
@@ -0,0 +1,66 @@
+package com.company.andy.common.event.publish;
+
+import com.company.andy.common.configuration.profile.DisableForIT;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.company.andy.common.utils.CommonUtils.requireNonBlank;
+import static com.company.andy.common.utils.Constants.MONGO_ID;
+import static java.time.Duration.ofSeconds;
+import static java.util.Objects.requireNonNull;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+// DAO for change stream resume tokens
+
+@Slf4j
+@Component
+@DisableForIT
+@RequiredArgsConstructor
+public class ChangeStreamResumeTokenDao {
+    private static final Duration SAVE_INTERVAL = ofSeconds(1);
+    private final MongoTemplate mongoTemplate;
+    private final Map<String, Instant> lastSavedAts = new ConcurrentHashMap<>();
+
+    public BsonDocument resumeToken(String streamName) {
+        requireNonBlank(streamName, "Stream name must not be blank.");
+        ChangeStreamResumeToken resumeToken = mongoTemplate.findById(streamName, ChangeStreamResumeToken.class);
+        return resumeToken != null ? BsonDocument.parse(resumeToken.getToken()) : null;
+    }
+
+    // Saves at most once per SAVE_INTERVAL for each stream to avoid one extra write per change,
+    // resuming from a slightly older token only results in replaying a few already handled changes
+    public void save(String streamName, BsonDocument token) {
+        requireNonBlank(streamName, "Stream name must not be blank.");
+        requireNonNull(token, "Resume token must not be null.");
+
+        Instant now = Instant.now();
+        Instant lastSavedAt = lastSavedAts.get(streamName);
+        if (lastSavedAt != null && now.isBefore(lastSavedAt.plus(SAVE_INTERVAL))) {
+            return;
+        }
+
+        lastSavedAts.put(streamName, now);
+        Query query = query(where(MONGO_ID).is(streamName));
+        Update update = new Update()
+                .set(ChangeStreamResumeToken.Fields.token, token.toJson())
+                .set(ChangeStreamResumeToken.Fields.savedAt, now);
+        mongoTemplate.upsert(query, update, ChangeStreamResumeToken.class);
+    }
+
+    public void remove(String streamName) {
+        requireNonBlank(streamName, "Stream name must not be blank.");
+        lastSavedAts.remove(streamName);
+        mongoTemplate.remove(query(where(MONGO_ID).is(streamName)), ChangeStreamResumeToken.class);
+    }
+}
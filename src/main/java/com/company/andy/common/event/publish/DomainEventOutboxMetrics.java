@@ -0,0 +1,55 @@
+package com.company.andy.common.event.publish;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.company.andy.common.event.publish.DomainEventPublishStatus.CREATED;
+import static com.company.andy.common.event.publish.DomainEventPublishStatus.PUBLISH_FAILED;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+// Health gauges of the publishing-event outbox, values are refreshed by DomainEventJobScheduler rather than on every scrape,
+// a growing oldest staged age with a flat published count per run usually means the publisher is stuck
+
+@Slf4j
+@Component
+public class DomainEventOutboxMetrics {
+    private final PublishingDomainEventDao publishingDomainEventDao;
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong publishFailedCount = new AtomicLong();
+    private final AtomicReference<Instant> oldestStagedRaisedAt = new AtomicReference<>();
+
+    public DomainEventOutboxMetrics(PublishingDomainEventDao publishingDomainEventDao, MeterRegistry meterRegistry) {
+        this.publishingDomainEventDao = publishingDomainEventDao;
+        Gauge.builder("domain.event.outbox.staged", this.createdCount, AtomicLong::get)
+                .description("Number of domain events in the outbox waiting to be published")
+                .tag("status", CREATED.name())
+                .register(meterRegistry);
+        Gauge.builder("domain.event.outbox.staged", this.publishFailedCount, AtomicLong::get)
+                .description("Number of domain events in the outbox waiting to be published")
+                .tag("status", PUBLISH_FAILED.name())
+                .register(meterRegistry);
+        TimeGauge.builder("domain.event.outbox.oldest.staged.age", this.oldestStagedRaisedAt, MILLISECONDS, it -> {
+                    Instant raisedAt = it.get();
+                    return raisedAt == null ? 0 : Math.max(0, System.currentTimeMillis() - raisedAt.toEpochMilli());
+                })
+                .description("Age of the oldest domain event in the outbox waiting to be published")
+                .register(meterRegistry);
+    }
+
+    public void refresh() {
+        try {
+            this.createdCount.set(this.publishingDomainEventDao.countByStatus(CREATED));
+            this.publishFailedCount.set(this.publishingDomainEventDao.countByStatus(PUBLISH_FAILED));
+            this.oldestStagedRaisedAt.set(this.publishingDomainEventDao.oldestStagedRaisedAt());
+        } catch (Throwable t) {
+            log.warn("Failed to refresh domain event outbox metrics.", t);
+        }
+    }
+}
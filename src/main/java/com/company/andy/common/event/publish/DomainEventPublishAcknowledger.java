@@ -0,0 +1,84 @@
+package com.company.andy.common.event.publish;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.time.Duration.ofMillis;
+import static java.time.Instant.now;
+
+// Collects send results of domain events and acknowledges them to DB in micro-batches,
+// a batch is flushed when it reaches MAX_PENDING_SIZE or when FLUSH_INTERVAL has elapsed since the last flush,
+// hence the acknowledging cost is O(batches) instead of O(events) round trips to MongoDB,
+// the owner calls flushIfNeeded() regularly while waiting for results, so the last partial batch is not held back until more results arrive,
+// and calls close() when it stops, after which results of still in-flight sending are acknowledged one by one
+
+@Slf4j
+class DomainEventPublishAcknowledger {
+    private static final int MAX_PENDING_SIZE = 500;
+    static final Duration FLUSH_INTERVAL = ofMillis(200);
+    private final PublishingDomainEventDao publishingDomainEventDao;
+    private List<String> succeededEventIds = new ArrayList<>();
+    private List<String> failedEventIds = new ArrayList<>();
+    private Instant lastFlushedAt = now();
+    private boolean closed = false;
+
+    DomainEventPublishAcknowledger(PublishingDomainEventDao publishingDomainEventDao) {
+        this.publishingDomainEventDao = publishingDomainEventDao;
+    }
+
+    void succeeded(String eventId) {
+        synchronized (this) {
+            this.succeededEventIds.add(eventId);
+        }
+        flushIfNeeded();
+    }
+
+    void failed(String eventId) {
+        synchronized (this) {
+            this.failedEventIds.add(eventId);
+        }
+        flushIfNeeded();
+    }
+
+    void flush() {
+        List<String> succeeded;
+        List<String> failed;
+        synchronized (this) {
+            succeeded = this.succeededEventIds;
+            failed = this.failedEventIds;
+            this.succeededEventIds = new ArrayList<>();
+            this.failedEventIds = new ArrayList<>();
+            this.lastFlushedAt = now();
+        }
+
+        this.publishingDomainEventDao.successPublish(succeeded);
+        this.publishingDomainEventDao.failPublish(failed);
+        log.debug("Acknowledged {} succeeded and {} failed domain events.", succeeded.size(), failed.size());
+    }
+
+    // Must be called when the owner stops, otherwise the remaining results will not be acknowledged
+    void close() {
+        synchronized (this) {
+            this.closed = true;
+        }
+        flush();
+    }
+
+    void flushIfNeeded() {
+        boolean shouldFlush;
+        synchronized (this) {
+            int pendingSize = this.succeededEventIds.size() + this.failedEventIds.size();
+            shouldFlush = pendingSize > 0 && (this.closed
+                                              || pendingSize >= MAX_PENDING_SIZE
+                                              || now().isAfter(this.lastFlushedAt.plus(FLUSH_INTERVAL)));
+        }
+
+        if (shouldFlush) {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.company.andy.common.event.publish;
+
+import com.company.andy.common.configuration.profile.DisableForIT;
+import com.company.andy.common.configuration.property.CommonProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static java.time.Duration.ofMillis;
+import static java.time.Duration.ofSeconds;
+import static java.time.Instant.EPOCH;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+// Fast path of publishing when "common.event-publish.direct-handoff" is enabled:
+// events carried by the change stream are handed to DomainEventSender through a bounded in-memory queue without re-querying the outbox,
+// only the node that staged an event sends it, other nodes ignore it,
+// events that are not sent within HANDOFF_GRACE_PERIOD after their transaction commits(node crashed, queue full or sending failed) are taken over by DomainEventPublishJob,
+// note that per-aggregate ordering is only best effort in this mode if the same aggregate is modified on different nodes within a very short time
+
+@Slf4j
+@Component
+@NullMarked
+@DisableForIT
+@RequiredArgsConstructor
+public class DomainEventPublishHandoff implements SmartLifecycle {
+    static final Duration HANDOFF_GRACE_PERIOD = ofSeconds(10);
+    private static final int QUEUE_CAPACITY = 10000;
+    private static final int MAX_DRAIN_SIZE = 500;
+    private static final Duration POLL_TIMEOUT = ofMillis(200);
+    private final BlockingQueue<PublishingDomainEvent> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final DomainEventSender domainEventSender;
+    private final PublishingDomainEventDao publishingDomainEventDao;
+    private final DomainEventPublishTrigger domainEventPublishTrigger;
+    private final TaskExecutor taskExecutor;
+    private final CommonProperties commonProperties;
+    private volatile boolean running = false;
+
+    public boolean isEnabled() {
+        return this.commonProperties.eventPublish().directHandoff();
+    }
+
+    public void handoff(@Nullable PublishingDomainEvent event) {
+        if (event == null || !event.isStagedByThisNode()) {
+            return;
+        }
+
+        if (!this.queue.offer(event)) {
+            log.warn("Domain event handoff queue is full, event [{}] is left for recovery publishing.", event.getId());
+        }
+    }
+
+    private void run() {
+        DomainEventPublishAcknowledger acknowledger = new DomainEventPublishAcknowledger(publishingDomainEventDao);
+        Instant lastRecoveredAt = EPOCH;
+        List<PublishingDomainEvent> events = new ArrayList<>(MAX_DRAIN_SIZE);
+
+        while (this.running) {
+            try {
+                PublishingDomainEvent first = this.queue.poll(POLL_TIMEOUT.toMillis(), MILLISECONDS);
+                if (first == null) {
+                    acknowledger.flush();
+                } else {
+                    events.add(first);
+                    this.queue.drainTo(events, MAX_DRAIN_SIZE - 1);
+                    events.forEach(event -> this.domainEventSender.send(event)
+                            .whenCompleteAsync((eventId, ex) -> {
+                                if (ex == null) {
+                                    acknowledger.succeeded(eventId);
+                                } else {
+                                    acknowledger.failed(event.getId());
+                                    log.error("Error publishing domain event [{}]:", event.getId(), ex);
+                                }
+                            }, this.taskExecutor));
+                    events.clear();
+                    acknowledger.flushIfNeeded();
+                }
+
+                // Regularly take over events left behind by the fast path on any node
+                if (Instant.now().isAfter(lastRecoveredAt.plus(HANDOFF_GRACE_PERIOD))) {
+                    lastRecoveredAt = Instant.now();
+                    this.domainEventPublishTrigger.trigger();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Throwable t) {
+                log.error("Error happened while handing off domain events.", t);
+            }
+        }
+
+        acknowledger.close(); // Results of sending still in flight are acknowledged as they arrive
+    }
+
+    @Override
+    public void start() {
+        if (isEnabled()) {
+            this.running = true;
+            this.taskExecutor.execute(this::run);
+        }
+    }
+
+    @Override
+    public void stop() {
+        this.running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return this.running;
+    }
+}
@@ -1,20 +1,29 @@
 package com.company.andy.common.event.publish;
 
-import lombok.RequiredArgsConstructor;
+import com.company.andy.common.configuration.property.CommonProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import net.javacrumbs.shedlock.core.LockConfiguration;
 import net.javacrumbs.shedlock.core.LockingTaskExecutor;
 import org.springframework.core.task.TaskExecutor;
 import org.springframework.stereotype.Component;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.IntStream;
 
+import static com.company.andy.common.event.publish.DomainEventPublishAcknowledger.FLUSH_INTERVAL;
+import static com.company.andy.common.event.publish.DomainEventPublishHandoff.HANDOFF_GRACE_PERIOD;
 import static java.time.Duration.ofMillis;
 import static java.time.Duration.ofMinutes;
 import static java.time.Instant.now;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.stream.Collectors.toList;
 import static net.javacrumbs.shedlock.core.LockAssert.assertLocked;
 import static org.apache.commons.collections4.CollectionUtils.isEmpty;
@@ -24,7 +33,6 @@ import static org.apache.commons.collections4.CollectionUtils.isNotEmpty;
 
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class DomainEventPublishJob {
     private static final String MIN_START_EVENT_ID = "EVT00000000000000001";
     private static final int MAX_BATCH_SIZE = 500;
@@ -33,17 +41,63 @@ public class DomainEventPublishJob {
     private final PublishingDomainEventDao publishingDomainEventDao;
     private final DomainEventSender domainEventSender;
     private final TaskExecutor taskExecutor;
+    private final CommonProperties commonProperties;
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary publishedPerRun;
+
+    public DomainEventPublishJob(LockingTaskExecutor lockingTaskExecutor,
+                                 PublishingDomainEventDao publishingDomainEventDao,
+                                 DomainEventSender domainEventSender,
+                                 TaskExecutor taskExecutor,
+                                 CommonProperties commonProperties,
+                                 MeterRegistry meterRegistry) {
+        this.lockingTaskExecutor = lockingTaskExecutor;
+        this.publishingDomainEventDao = publishingDomainEventDao;
+        this.domainEventSender = domainEventSender;
+        this.taskExecutor = taskExecutor;
+        this.commonProperties = commonProperties;
+        this.meterRegistry = meterRegistry;
+        this.publishedPerRun = DistributionSummary.builder("domain.event.publish.run.events")
+                .description("Number of domain events sent per run of the publish job")
+                .register(meterRegistry);
+    }
 
     public void publishStagedDomainEvents(int batchSize) {
         if (batchSize > MAX_BATCH_SIZE || batchSize < 1) {
             throw new IllegalArgumentException("batchSize must be greater than or equal to 1 and less than 500.");
         }
 
+        int shards = commonProperties.eventPublish().shards();
+        if (shards == 1) {
+            publishStagedDomainEvents(0, 1, batchSize);
+            return;
+        }
+
+        // Each shard is guarded by its own lock, so different nodes can publish different shards at the same time,
+        // events of the same aggregate always fall into the same shard, hence the per-aggregate ordering still holds
+        CompletableFuture.allOf(IntStream.range(0, shards)
+                .mapToObj(shard -> CompletableFuture.runAsync(() -> publishStagedDomainEvents(shard, shards, batchSize), taskExecutor))
+                .toArray(CompletableFuture[]::new)).join();
+    }
+
+    private void publishStagedDomainEvents(int shard, int shards, int batchSize) {
         try {
-            // Use a distributed lock to ensure only one node runs at a time, otherwise it may result in duplicated events or ordering issue
-            var result = lockingTaskExecutor.executeWithLock(() -> doPublishStagedDomainEvents(batchSize),
-                    new LockConfiguration(now(), "publish-domain-events", ofMinutes(1), ofMillis(1)));
+            // Use a distributed lock to ensure only one node runs at a time for the same shard, otherwise it may result in duplicated events or ordering issue
+            String lockName = lockName(shard, shards);
+            var result = lockingTaskExecutor.executeWithLock(() -> doPublishStagedDomainEvents(shard, shards, batchSize),
+                    new LockConfiguration(now(), lockName, ofMinutes(1), ofMillis(1)));
+            if (!result.wasExecuted()) {
+                // Normal if another node is publishing, but keeps growing if a stale lock blocks all nodes
+                Counter.builder("domain.event.publish.lock.unavailable")
+                        .description("Number of publish runs skipped because the lock is held elsewhere")
+                        .tag("lock", lockName)
+                        .register(this.meterRegistry)
+                        .increment();
+                return;
+            }
+
             List<String> publishedEventIds = result.getResult();
+            this.publishedPerRun.record(publishedEventIds == null ? 0 : publishedEventIds.size());
             if (isNotEmpty(publishedEventIds)) {
                 log.debug("Published domain events {}.", publishedEventIds);
             }
@@ -52,15 +106,27 @@ public class DomainEventPublishJob {
         }
     }
 
-    private List<String> doPublishStagedDomainEvents(int batchSize) throws ExecutionException, InterruptedException {
+    private static String lockName(int shard, int shards) {
+        return shards == 1 ? "publish-domain-events" : "publish-domain-events-" + shard;
+    }
+
+    private List<String> doPublishStagedDomainEvents(int shard, int shards, int batchSize) throws ExecutionException, InterruptedException {
         assertLocked();
 
+        // With direct handoff, recent events are being sent by the nodes that staged them, so only take over those left behind,
+        // an event is handed off only after its transaction commits, which can be up to maxTransactionLifetime after it is staged,
+        // hence the cutoff leaves that much time on top of HANDOFF_GRACE_PERIOD
+        CommonProperties.EventPublish eventPublish = commonProperties.eventPublish();
+        Instant stagedBefore = eventPublish.directHandoff()
+                ? now().minus(eventPublish.maxTransactionLifetime()).minus(HANDOFF_GRACE_PERIOD)
+                : null;
         int counter = 0;
         String startEventId = MIN_START_EVENT_ID;
         List<CompletableFuture<String>> futures = new ArrayList<>();
+        DomainEventPublishAcknowledger acknowledger = new DomainEventPublishAcknowledger(publishingDomainEventDao);
 
         while (true) {
-            List<PublishingDomainEvent> publishingDomainEvents = publishingDomainEventDao.stagedEvents(startEventId, batchSize);
+            List<PublishingDomainEvent> publishingDomainEvents = publishingDomainEventDao.stagedEvents(shard, shards, stagedBefore, startEventId, batchSize);
             if (isEmpty(publishingDomainEvents)) {
                 break;
             }
@@ -68,10 +134,11 @@ public class DomainEventPublishJob {
             for (PublishingDomainEvent event : publishingDomainEvents) {
                 var future = this.domainEventSender.send(event)
                         .whenCompleteAsync((eventId, ex) -> {
+                            // Results are acknowledged to DB in micro-batches rather than one update per event
                             if (ex == null) {
-                                this.publishingDomainEventDao.successPublish(eventId);
+                                acknowledger.succeeded(eventId);
                             } else {
-                                this.publishingDomainEventDao.failPublish(event.getId());
+                                acknowledger.failed(event.getId());
                                 log.error("Error publishing domain event [{}]:", eventId, ex);
                             }
                         }, taskExecutor);
@@ -91,7 +158,19 @@ public class DomainEventPublishJob {
                         .map(CompletableFuture::join)
                         .collect(toList())
                 );
-        allResults.join();
+        try {
+            // Keep acknowledging while waiting, so a partial batch is not held back until more results arrive
+            while (true) {
+                try {
+                    allResults.get(FLUSH_INTERVAL.toMillis(), MILLISECONDS);
+                    break;
+                } catch (TimeoutException e) {
+                    acknowledger.flushIfNeeded();
+                }
+            }
+        } finally {
+            acknowledger.close(); // Acknowledge the remaining results no matter whether there are failures or not
+        }
         return allResults.get();
     }
 }
@@ -0,0 +1,96 @@
+package com.company.andy.common.event.publish;
+
+import com.company.andy.common.configuration.profile.DisableForIT;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.Math.min;
+import static java.lang.System.nanoTime;
+import static java.time.Duration.ofMillis;
+
+// Coalesces bursts of publish triggers(e.g. change stream notifications of the outbox) into a single drain pass of DomainEventPublishJob,
+// a drain starts after no trigger arrives for QUIET_PERIOD, but no later than MAX_DELAY after the first trigger of the burst,
+// triggers arriving while a drain is running on this node do not start another scan but result in one more drain after the current one
+
+@Slf4j
+@Component
+@DisableForIT
+public class DomainEventPublishTrigger {
+    static final Duration QUIET_PERIOD = ofMillis(20);
+    static final Duration MAX_DELAY = ofMillis(200);
+    private static final int BATCH_SIZE = 100;
+    private static final int IDLE = 0;
+    private static final int PENDING = 1;
+    private static final int RUNNING = 2;
+    private static final int RUNNING_WITH_RERUN = 3;
+    private final DomainEventPublishJob domainEventPublishJob;
+    private final TaskExecutor taskExecutor;
+    private final Counter coalescedCounter;
+    private final AtomicInteger state = new AtomicInteger(IDLE);
+    private volatile long lastTriggeredAt = nanoTime();
+
+    public DomainEventPublishTrigger(DomainEventPublishJob domainEventPublishJob,
+                                     TaskExecutor taskExecutor,
+                                     MeterRegistry meterRegistry) {
+        this.domainEventPublishJob = domainEventPublishJob;
+        this.taskExecutor = taskExecutor;
+        this.coalescedCounter = Counter.builder("domain.event.publish.trigger.coalesced")
+                .description("Number of publish triggers merged into an already pending or running drain")
+                .register(meterRegistry);
+    }
+
+    public void trigger() {
+        this.lastTriggeredAt = nanoTime();
+        while (true) {
+            int current = this.state.get();
+            if (current == IDLE) {
+                if (this.state.compareAndSet(IDLE, PENDING)) {
+                    this.taskExecutor.execute(this::drain);
+                    return;
+                }
+            } else if (current == RUNNING) {
+                if (this.state.compareAndSet(RUNNING, RUNNING_WITH_RERUN)) {
+                    this.coalescedCounter.increment();
+                    return;
+                }
+            } else {
+                this.coalescedCounter.increment();
+                return;
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            do {
+                awaitQuietPeriod();
+                this.state.set(RUNNING);
+                this.domainEventPublishJob.publishStagedDomainEvents(BATCH_SIZE);
+            } while (!this.state.compareAndSet(RUNNING, IDLE) && this.state.compareAndSet(RUNNING_WITH_RERUN, PENDING));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.state.set(IDLE);
+        } catch (Throwable t) {
+            log.error("Error happened while draining staged domain events.", t);
+            this.state.set(IDLE);
+        }
+    }
+
+    private void awaitQuietPeriod() throws InterruptedException {
+        long deadline = nanoTime() + MAX_DELAY.toNanos();
+        while (true) {
+            long wakeUpAt = min(this.lastTriggeredAt + QUIET_PERIOD.toNanos(), deadline);
+            long remaining = wakeUpAt - nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            Thread.sleep(Duration.ofNanos(remaining));
+        }
+    }
+}
@@ -8,25 +8,34 @@ import org.springframework.data.annotation.TypeAlias;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
+import java.util.UUID;
 
 import static com.company.andy.common.event.publish.DomainEventPublishStatus.CREATED;
 import static com.company.andy.common.utils.Constants.PUBLISHING_EVENT_COLLECTION;
 import static java.util.Objects.requireNonNull;
 import static lombok.AccessLevel.PRIVATE;
 
-// Wrapper of DomainEvent for publishing, added "status" and "publishCount" to track the publishing process
+// Wrapper of DomainEvent for publishing, added "status" and "publishCount" to track the publishing process,
+// and "arIdHash" to split the events into publishing shards while keeping events of the same aggregate in the same shard,
+// and "stagedBy" to identify the application instance that staged the event,
+// and "stagedAt" to tell when the event was inserted into the outbox within the business transaction,
+// note that the event only becomes visible on commit, which can be up to the max transaction lifetime after "stagedAt"
 @Getter
 @FieldNameConstants
 @NoArgsConstructor(access = PRIVATE)
 @Document(PUBLISHING_EVENT_COLLECTION)
 @TypeAlias(PUBLISHING_EVENT_COLLECTION)
 public class PublishingDomainEvent {
+    private static final String THIS_NODE = UUID.randomUUID().toString();
     private String id;
     private DomainEvent event;
     private DomainEventPublishStatus status;
     private int publishedCount;
+    private int arIdHash;
     private String traceparent;
     private Instant raisedAt;
+    private String stagedBy;
+    private Instant stagedAt;
 
     public PublishingDomainEvent(DomainEvent event, String traceparent) {
         requireNonNull(event, "Domain event must not be null.");
@@ -35,7 +44,14 @@ public class PublishingDomainEvent {
         this.event = event;
         this.status = CREATED;
         this.publishedCount = 0;
+        this.arIdHash = event.getArId().hashCode() & Integer.MAX_VALUE;
         this.traceparent = traceparent;
         this.raisedAt = event.getRaisedAt();
+        this.stagedBy = THIS_NODE;
+        this.stagedAt = Instant.now();
+    }
+
+    public boolean isStagedByThisNode() {
+        return THIS_NODE.equals(this.stagedBy);
     }
 }
@@ -6,16 +6,21 @@ import com.company.andy.common.tracing.TracingService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Component;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import static com.company.andy.common.event.publish.DomainEventPublishStatus.*;
 import static com.company.andy.common.utils.CommonUtils.requireNonBlank;
 import static com.company.andy.common.utils.Constants.MONGO_ID;
 import static java.util.Objects.requireNonNull;
+import static org.apache.commons.collections4.CollectionUtils.isEmpty;
 import static org.springframework.data.domain.Sort.Direction.ASC;
 import static org.springframework.data.domain.Sort.by;
 import static org.springframework.data.mongodb.core.query.Criteria.where;
@@ -43,12 +48,39 @@ public class PublishingDomainEventDao {
     }
 
     public List<PublishingDomainEvent> stagedEvents(String startId, int limit) {
+        return stagedEvents(0, 1, null, startId, limit);
+    }
+
+    // Staged events of one publishing shard, an event belongs to shard [arIdHash % shards],
+    // only events staged before "stagedBefore" are returned if it's not null
+    public List<PublishingDomainEvent> stagedEvents(int shard, int shards, Instant stagedBefore, String startId, int limit) {
         requireNonBlank(startId, "Start ID must not be blank.");
+        if (shard < 0 || shard >= shards) {
+            throw new IllegalArgumentException("shard must be greater than or equal to 0 and less than shards.");
+        }
 
-        Query query = query(where(PublishingDomainEvent.Fields.status).in(CREATED, PUBLISH_FAILED)
+        Criteria criteria = where(PublishingDomainEvent.Fields.status).in(CREATED, PUBLISH_FAILED)
                 .and(MONGO_ID).gt(startId)
-                .and(PublishingDomainEvent.Fields.publishedCount).lt(MAX_PUBLISH_COUNT))
-                .with(by(ASC, PublishingDomainEvent.Fields.raisedAt))
+                .and(PublishingDomainEvent.Fields.publishedCount).lt(MAX_PUBLISH_COUNT);
+        List<Criteria> alternatives = new ArrayList<>();
+        if (shards > 1 && shard == 0) {
+            // Events staged before sharding was introduced have no arIdHash, they all go to the first shard
+            alternatives.add(new Criteria().orOperator(where(PublishingDomainEvent.Fields.arIdHash).mod(shards, shard),
+                    where(PublishingDomainEvent.Fields.arIdHash).exists(false)));
+        } else if (shards > 1) {
+            criteria.and(PublishingDomainEvent.Fields.arIdHash).mod(shards, shard);
+        }
+        if (stagedBefore != null) {
+            // Events staged before stagedAt was introduced have no stagedAt, they are old enough anyway
+            alternatives.add(new Criteria().orOperator(where(PublishingDomainEvent.Fields.stagedAt).lt(stagedBefore),
+                    where(PublishingDomainEvent.Fields.stagedAt).exists(false)));
+        }
+        if (!alternatives.isEmpty()) {
+            criteria.andOperator(alternatives);
+        }
+
+        Query query = query(criteria)
+                .with(by(ASC, MONGO_ID)) // Sort by the same key as paging, snowflake based event IDs are ordered by time anyway
                 .limit(limit);
         return mongoTemplate.find(query, PublishingDomainEvent.class);
     }
@@ -69,6 +101,45 @@ public class PublishingDomainEventDao {
         mongoTemplate.updateFirst(query, update, PublishingDomainEvent.class);
     }
 
+    // Bulk version of successPublish(), acknowledges a whole batch of published events in a single round trip
+    public void successPublish(Collection<String> eventIds) {
+        if (isEmpty(eventIds)) {
+            return;
+        }
+        Query query = Query.query(where(MONGO_ID).in(eventIds));
+        Update update = new Update();
+        update.set(PublishingDomainEvent.Fields.status, PUBLISH_SUCCEED.name()).inc(PublishingDomainEvent.Fields.publishedCount);
+        mongoTemplate.updateMulti(query, update, PublishingDomainEvent.class);
+    }
+
+    // Bulk version of failPublish(), acknowledges a whole batch of failed events in a single round trip
+    public void failPublish(Collection<String> eventIds) {
+        if (isEmpty(eventIds)) {
+            return;
+        }
+        Query query = Query.query(where(MONGO_ID).in(eventIds));
+        Update update = new Update();
+        update.set(PublishingDomainEvent.Fields.status, PUBLISH_FAILED.name()).inc(PublishingDomainEvent.Fields.publishedCount);
+        mongoTemplate.updateMulti(query, update, PublishingDomainEvent.class);
+    }
+
+    // Number of events in the given status regardless of how many times they have been published, for monitoring the outbox
+    public long countByStatus(DomainEventPublishStatus status) {
+        requireNonNull(status, "Status must not be null.");
+        return mongoTemplate.count(query(where(PublishingDomainEvent.Fields.status).is(status)), PublishingDomainEvent.class);
+    }
+
+    // Raised time of the oldest event still waiting to be published, null if there is none
+    public Instant oldestStagedRaisedAt() {
+        Query query = query(where(PublishingDomainEvent.Fields.status).in(CREATED, PUBLISH_FAILED)
+                .and(PublishingDomainEvent.Fields.publishedCount).lt(MAX_PUBLISH_COUNT))
+                .with(by(ASC, MONGO_ID))
+                .limit(1);
+        query.fields().include(PublishingDomainEvent.Fields.raisedAt);
+        PublishingDomainEvent event = mongoTemplate.findOne(query, PublishingDomainEvent.class);
+        return event == null ? null : event.getRaisedAt();
+    }
+
     public PublishingDomainEvent byId(String eventId) {
         requireNonBlank(eventId, "Event ID must not be blank.");
         Query query = Query.query(where(MONGO_ID).is(eventId));
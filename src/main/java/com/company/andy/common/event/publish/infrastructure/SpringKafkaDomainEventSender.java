@@ -1,28 +1,60 @@
 package com.company.andy.common.event.publish.infrastructure;
 
 import com.company.andy.common.configuration.profile.DisableForIT;
+import com.company.andy.common.configuration.property.CommonProperties;
 import com.company.andy.common.event.DomainEvent;
 import com.company.andy.common.event.publish.DomainEventSender;
 import com.company.andy.common.event.publish.PublishingDomainEvent;
 import com.company.andy.common.tracing.TracingService;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
 
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 import static com.company.andy.common.utils.Constants.KAFKA_DOMAIN_EVENT_TOPIC;
+import static org.apache.kafka.clients.producer.ProducerConfig.BATCH_SIZE_CONFIG;
 
 // Send domain events to Kafka
 // This is the only place where event publishing touches Kafka, hence the coupling to Kafka is minimized
 @Slf4j
 @Component
 @DisableForIT
-@RequiredArgsConstructor
 public class SpringKafkaDomainEventSender implements DomainEventSender {
+    private static final String SEND_LATENCY_METRIC = "domain.event.send.latency";
+    private static final String BATCH_FILL_METRIC = "domain.event.send.batch.fill";
     private final KafkaTemplate<String, DomainEvent> kafkaTemplate;
     private final TracingService tracingService;
+    private final Timer sendSucceededTimer;
+    private final Timer sendFailedTimer;
+    private final int batchSize;
+
+    public SpringKafkaDomainEventSender(KafkaTemplate<String, DomainEvent> kafkaTemplate,
+                                        TracingService tracingService,
+                                        MeterRegistry meterRegistry,
+                                        CommonProperties commonProperties) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.tracingService = tracingService;
+        this.sendSucceededTimer = sendLatencyTimer("success", meterRegistry);
+        this.sendFailedTimer = sendLatencyTimer("failure", meterRegistry);
+
+        // The batch size actually used by the producer, which may be overridden by "spring.kafka.producer.batch-size"
+        Object configuredBatchSize = kafkaTemplate.getProducerFactory().getConfigurationProperties().get(BATCH_SIZE_CONFIG);
+        this.batchSize = configuredBatchSize != null
+                ? Integer.parseInt(configuredBatchSize.toString())
+                : commonProperties.kafkaProducer().batchSize();
+
+        // How full the producer batches are on average, a low ratio means linger is too short or batch size is too large
+        Gauge.builder(BATCH_FILL_METRIC, this, SpringKafkaDomainEventSender::batchFillRatio)
+                .description("Average producer batch size divided by the configured batch size")
+                .register(meterRegistry);
+    }
 
     @Override
     public CompletableFuture<String> send(PublishingDomainEvent publishingDomainEvent) {
@@ -32,7 +64,27 @@ public class SpringKafkaDomainEventSender implements DomainEventSender {
     }
 
     private CompletableFuture<String> doSend(DomainEvent event) {
+        Timer.Sample sample = Timer.start();
         return this.kafkaTemplate.send(KAFKA_DOMAIN_EVENT_TOPIC, event.getArId(), event)
+                .whenComplete((_, ex) -> sample.stop(ex == null ? this.sendSucceededTimer : this.sendFailedTimer))
                 .thenApply(record -> record.getProducerRecord().value().getId());
     }
+
+    private static Timer sendLatencyTimer(String outcome, MeterRegistry meterRegistry) {
+        return Timer.builder(SEND_LATENCY_METRIC)
+                .description("Latency from sending a domain event to its acknowledgement by Kafka")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private double batchFillRatio() {
+        for (Map.Entry<MetricName, ? extends Metric> entry : this.kafkaTemplate.metrics().entrySet()) {
+            MetricName name = entry.getKey();
+            if ("producer-metrics".equals(name.group()) && "batch-size-avg".equals(name.name())
+                && entry.getValue().metricValue() instanceof Number value) {
+                return value.doubleValue() / this.batchSize;
+            }
+        }
+        return Double.NaN;
+    }
 }
@@ -1,6 +1,8 @@
 package com.company.andy.common.init;
 
 import com.company.andy.common.event.consume.ConsumingEvent;
+import com.company.andy.common.event.consume.ConsumingEventPayload;
+import com.company.andy.common.event.publish.ChangeStreamResumeToken;
 import com.company.andy.common.event.publish.PublishingDomainEvent;
 import com.company.andy.feature.demoreservation.domain.DemoReservation;
 import com.company.andy.feature.equipment.domain.Equipment;
@@ -32,6 +34,8 @@ public class ApplicationInitializer implements SmartLifecycle {
         createCollection(SystemSettings.class);
         createCollection(PublishingDomainEvent.class);
         createCollection(ConsumingEvent.class);
+        createCollection(ConsumingEventPayload.class);
+        createCollection(ChangeStreamResumeToken.class);
         createCollection(Equipment.class);
         createCollection(MaintenanceRecord.class);
         createCollection(DemoReservation.class);
@@ -0,0 +1,42 @@
+package com.company.andy.common.migration;
+
+import com.company.andy.common.event.publish.PublishingDomainEvent;
+import io.mongock.api.annotations.ChangeUnit;
+import io.mongock.api.annotations.Execution;
+import io.mongock.api.annotations.RollbackExecution;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+
+import static com.company.andy.common.event.publish.DomainEventPublishStatus.CREATED;
+import static com.company.andy.common.event.publish.DomainEventPublishStatus.PUBLISH_FAILED;
+import static com.company.andy.common.utils.Constants.MONGO_ID;
+import static org.springframework.data.domain.Sort.Direction.ASC;
+import static org.springframework.data.mongodb.core.index.PartialIndexFilter.of;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+// Class name should follow format: "Migration[3 digits index]_[SimpleDescriptionOfYourMigration]"
+
+@Slf4j
+@ChangeUnit(id = "Migration003_PublishingDomainEventStagedIndex", order = "003", author = "andy", transactional = false)
+public class Migration003_PublishingDomainEventStagedIndex {
+
+    @Execution
+    public void execute(MongoTemplate mongoTemplate) {
+        IndexOperations indexOperations = mongoTemplate.indexOps(PublishingDomainEvent.class);
+        // Built for PublishingDomainEventDao.stagedEvents(): equality on status, range and sort on _id, then filter on publishedCount,
+        // only staged events are indexed, so the index stays small no matter how many published events are kept in the outbox
+        indexOperations.createIndex(new Index()
+                .on(PublishingDomainEvent.Fields.status, ASC)
+                .on(MONGO_ID, ASC)
+                .on(PublishingDomainEvent.Fields.publishedCount, ASC)
+                .partial(of(where(PublishingDomainEvent.Fields.status).in(CREATED.name(), PUBLISH_FAILED.name())))
+                .named("idx_staged_status_id_publishedCount"));
+    }
+
+    @RollbackExecution
+    public void rollback(MongoTemplate mongoTemplate) {
+        mongoTemplate.indexOps(PublishingDomainEvent.class).dropIndex("idx_staged_status_id_publishedCount");
+    }
+}
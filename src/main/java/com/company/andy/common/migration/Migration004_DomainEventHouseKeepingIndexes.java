@@ -0,0 +1,34 @@
+package com.company.andy.common.migration;
+
+import com.company.andy.common.event.consume.ConsumingEvent;
+import com.company.andy.common.event.consume.ConsumingEventPayload;
+import io.mongock.api.annotations.ChangeUnit;
+import io.mongock.api.annotations.Execution;
+import io.mongock.api.annotations.RollbackExecution;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+
+import static org.springframework.data.domain.Sort.Direction.ASC;
+
+// Class name should follow format: "Migration[3 digits index]_[SimpleDescriptionOfYourMigration]"
+
+@Slf4j
+@ChangeUnit(id = "Migration004_DomainEventHouseKeepingIndexes", order = "004", author = "andy", transactional = false)
+public class Migration004_DomainEventHouseKeepingIndexes {
+
+    @Execution
+    public void execute(MongoTemplate mongoTemplate) {
+        // Built for DomainEventHouseKeepingJob which removes old events in chunks sorted by time, publishing side already has idx_raisedAt
+        mongoTemplate.indexOps(ConsumingEvent.class)
+                .createIndex(new Index().on(ConsumingEvent.Fields.consumedAt, ASC).named("idx_consumedAt"));
+        mongoTemplate.indexOps(ConsumingEventPayload.class)
+                .createIndex(new Index().on(ConsumingEventPayload.Fields.storedAt, ASC).named("idx_storedAt"));
+    }
+
+    @RollbackExecution
+    public void rollback(MongoTemplate mongoTemplate) {
+        mongoTemplate.indexOps(ConsumingEvent.class).dropIndex("idx_consumedAt");
+        mongoTemplate.indexOps(ConsumingEventPayload.class).dropIndex("idx_storedAt");
+    }
+}
@@ -0,0 +1,36 @@
+package com.company.andy.common.migration;
+
+import com.company.andy.common.model.AggregateRoot;
+import com.company.andy.feature.equipment.domain.Equipment;
+import com.company.andy.feature.maintenance.domain.MaintenanceRecord;
+import io.mongock.api.annotations.ChangeUnit;
+import io.mongock.api.annotations.Execution;
+import io.mongock.api.annotations.RollbackExecution;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+
+import java.util.List;
+
+import static com.company.andy.common.utils.Constants.MONGO_ID;
+import static org.springframework.data.domain.Sort.Direction.ASC;
+
+// Class name should follow format: "Migration[3 digits index]_[SimpleDescriptionOfYourMigration]"
+
+@Slf4j
+@ChangeUnit(id = "Migration005_TenantScopedIdIndexes", order = "005", author = "andy", transactional = false)
+public class Migration005_TenantScopedIdIndexes {
+    private static final List<Class<? extends AggregateRoot>> ORG_LEVEL_AR_CLASSES = List.of(Equipment.class, MaintenanceRecord.class);
+
+    @Execution
+    public void execute(MongoTemplate mongoTemplate) {
+        // Built for AbstractMongoRepository.byId(id, orgId) and alike which query on both _id and orgId
+        ORG_LEVEL_AR_CLASSES.forEach(arClass -> mongoTemplate.indexOps(arClass)
+                .createIndex(new Index().on(MONGO_ID, ASC).on(AggregateRoot.Fields.orgId, ASC).named("idx_id_orgId")));
+    }
+
+    @RollbackExecution
+    public void rollback(MongoTemplate mongoTemplate) {
+        ORG_LEVEL_AR_CLASSES.forEach(arClass -> mongoTemplate.indexOps(arClass).dropIndex("idx_id_orgId"));
+    }
+}
@@ -4,15 +4,24 @@ import com.company.andy.common.event.DomainEvent;
 import com.company.andy.common.event.publish.PublishingDomainEventDao;
 import com.company.andy.common.exception.ServiceException;
 import com.company.andy.common.model.AggregateRoot;
+import com.google.common.collect.Lists;
+import com.google.common.collect.MapMaker;
+import com.mongodb.bulk.BulkWriteResult;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.*;
 
 import static com.company.andy.common.exception.ErrorCode.AR_NOT_FOUND;
+import static com.company.andy.common.exception.ErrorCode.CONFLICT;
 import static com.company.andy.common.exception.ErrorCode.NOT_SAME_ORG;
 import static com.company.andy.common.utils.CommonUtils.requireNonBlank;
 import static com.company.andy.common.utils.CommonUtils.singleParameterizedArgumentClassOf;
@@ -24,6 +33,7 @@ import static java.util.Objects.requireNonNull;
 import static java.util.Optional.empty;
 import static org.apache.commons.collections4.CollectionUtils.isEmpty;
 import static org.apache.commons.collections4.CollectionUtils.isNotEmpty;
+import static org.springframework.data.mongodb.core.BulkOperations.BulkMode.UNORDERED;
 import static org.springframework.data.mongodb.core.query.Criteria.where;
 import static org.springframework.data.mongodb.core.query.Query.query;
 
@@ -34,7 +44,9 @@ import static org.springframework.data.mongodb.core.query.Query.query;
 @SuppressWarnings("unchecked")
 @Slf4j
 public abstract class AbstractMongoRepository<AR extends AggregateRoot> {
+    private static final int BY_IDS_CHUNK_SIZE = 1000;
     private final Class<?> arClass;
+    private final Map<Object, Document> snapshots = new MapMaker().weakKeys().makeMap(); // Keyed by identity of loaded ARs
 
     @Autowired
     protected MongoTemplate mongoTemplate;
@@ -53,7 +65,12 @@ public abstract class AbstractMongoRepository<AR extends AggregateRoot> {
 
         List<DomainEvent> events = ar.getEvents();
         ar.clearEvents();
-        mongoTemplate.save(ar);
+        if (usePartialUpdate()) {
+            bulkSave(List.of(ar));
+        } else {
+            mongoTemplate.save(ar);
+        }
+        remember(ar);
         stageEvents(events);
     }
 
@@ -72,9 +89,10 @@ public abstract class AbstractMongoRepository<AR extends AggregateRoot> {
                 allEvents.addAll(arEvents);
             }
             ar.clearEvents();
-            mongoTemplate.save(ar);
         });
 
+        bulkSave(ars);
+        ars.forEach(this::remember);
         stageEvents(allEvents);
     }
 
@@ -84,6 +102,7 @@ public abstract class AbstractMongoRepository<AR extends AggregateRoot> {
         requireNonBlank(ar.getId(), arType() + " ID must not be blank.");
 
         mongoTemplate.remove(ar);
+        forget(ar.getId());
         stageEvents(ar.getEvents());
         ar.clearEvents();
     }
@@ -107,13 +126,14 @@ public abstract class AbstractMongoRepository<AR extends AggregateRoot> {
         });
 
         mongoTemplate.remove(query(where(MONGO_ID).in(ids)), arClass);
+        ids.forEach(this::forget);
         stageEvents(events);
     }
 
     public AR byId(String id) {
         requireNonBlank(id, arType() + " ID must not be blank.");
 
-        Object ar = mongoTemplate.findById(id, arClass);
+        Object ar = findById(id);
         if (ar == null) {
             throw new ServiceException(AR_NOT_FOUND, arType() + " not found.",
                     mapOf("type", arType(), "id", id));
@@ -125,28 +145,57 @@ public abstract class AbstractMongoRepository<AR extends AggregateRoot> {
     public Optional<AR> byIdOptional(String id) {
         requireNonBlank(id, arType() + " ID must not be blank.");
 
-        Object ar = mongoTemplate.findById(id, arClass);
+        Object ar = findById(id);
         return ar == null ? empty() : Optional.of((AR) ar);
     }
 
+    // orgId is part of the query rather than checked after loading, so ARs of other orgs are never loaded,
+    // and the lookup is served by the {_id, orgId} index, see Migration005_TenantScopedIdIndexes
     public AR byId(String id, String orgId) {
         requireNonBlank(id, arType() + " ID must not be blank.");
         requireNonBlank(orgId, "orgId must not be blank.");
 
-        AR ar = this.byId(id);
-        if (Objects.equals(ar.getOrgId(), orgId)) {
-            return ar;
+        Object ar = findById(id, orgId);
+        if (ar == null) {
+            throw new ServiceException(AR_NOT_FOUND, arType() + " not found.",
+                    mapOf("type", arType(), "id", id, "orgId", orgId));
         }
-        throw new ServiceException(AR_NOT_FOUND, arType() + " not found.",
-                mapOf("type", arType(), "id", id, "orgId", orgId));
+
+        return (AR) ar;
     }
 
     public Optional<AR> byIdOptional(String id, String orgId) {
         requireNonBlank(orgId, "orgId must not be blank.");
         requireNonBlank(id, arType() + " ID must not be blank.");
 
-        Optional<AR> ar = byIdOptional(id);
-        return ar.isPresent() && Objects.equals(ar.get().getOrgId(), orgId) ? ar : empty();
+        Object ar = findById(id, orgId);
+        return ar == null ? empty() : Optional.of((AR) ar);
+    }
+
+    // Loads multiple ARs with $in queries instead of one query per ID, returned in the order of the given IDs with duplicates removed,
+    // throws if any of the ARs is not found, with all the missing IDs reported
+    public List<AR> byIds(Collection<String> ids) {
+        return findByIds(ids, null);
+    }
+
+    public List<AR> byIds(Collection<String> ids, String orgId) {
+        requireNonBlank(orgId, "orgId must not be blank.");
+
+        return findByIds(ids, orgId);
+    }
+
+    // Opt-in identity map: within one transaction, repeated loads of the same AR return the already loaded instance without reading MongoDB again,
+    // only enable it for ARs that are never modified by MongoTemplate directly(e.g. updateFirst()) in the middle of a transaction,
+    // otherwise the loaded instance becomes stale and saving it would fail the optimistic locking or overwrite the direct modification
+    protected boolean useIdentityMap() {
+        return false;
+    }
+
+    // Opt-in partial update: ARs are snapshotted on load and diffed on save, only the changed paths are written with $set/$unset,
+    // which reduces oplog volume and write latency for large ARs compared with replacing the whole document,
+    // optimistic locking still applies, but version conflicts are reported as ServiceException(CONFLICT) as in save(List)
+    protected boolean usePartialUpdate() {
+        return false;
     }
 
     public boolean exists(String id) {
@@ -160,8 +209,183 @@ public abstract class AbstractMongoRepository<AR extends AggregateRoot> {
         requireNonBlank(orgId, "orgId must not be blank.");
         requireNonBlank(id, arType() + " ID must not be blank.");
 
-        Query query = query(where(AggregateRoot.Fields.orgId).is(orgId).and(MONGO_ID).is(id));
-        return mongoTemplate.exists(query, arClass);
+        return mongoTemplate.exists(byIdAndOrgQuery(id, orgId), arClass);
+    }
+
+    private Object findById(String id) {
+        Map<String, Object> identityMap = identityMap();
+        Object ar = identityMap != null ? identityMap.get(id) : null;
+        return ar != null ? ar : loaded(mongoTemplate.findById(id, arClass));
+    }
+
+    // An AR of another org in the identity map is treated as not found, just like the query on {_id, orgId}
+    private Object findById(String id, String orgId) {
+        Map<String, Object> identityMap = identityMap();
+        Object ar = identityMap != null ? identityMap.get(id) : null;
+        if (ar != null) {
+            return Objects.equals(((AR) ar).getOrgId(), orgId) ? ar : null;
+        }
+        return loaded(mongoTemplate.findOne(byIdAndOrgQuery(id, orgId), arClass));
+    }
+
+    private Map<String, Object> identityMap() {
+        return useIdentityMap() ? TransactionalIdentityMap.current(arClass) : null;
+    }
+
+    private Object remember(Object ar) {
+        Map<String, Object> identityMap = identityMap();
+        if (identityMap != null && ar != null) {
+            identityMap.put(((AR) ar).getId(), ar);
+        }
+        return ar;
+    }
+
+    private Object loaded(Object ar) {
+        if (ar != null && usePartialUpdate()) {
+            snapshots.put(ar, toDocument((AR) ar));
+        }
+        return remember(ar);
+    }
+
+    private void forget(String id) {
+        Map<String, Object> identityMap = identityMap();
+        if (identityMap != null) {
+            identityMap.remove(id);
+        }
+    }
+
+    private static Query byIdAndOrgQuery(String id, String orgId) {
+        return query(where(MONGO_ID).is(id).and(AggregateRoot.Fields.orgId).is(orgId));
+    }
+
+    private List<AR> findByIds(Collection<String> ids, String orgId) {
+        requireNonNull(ids, arType() + " IDs must not be null.");
+        ids.forEach(id -> requireNonBlank(id, arType() + " ID must not be blank."));
+
+        List<String> distinctIds = ids.stream().distinct().toList();
+        Map<String, AR> arsById = new HashMap<>();
+        Map<String, Object> identityMap = identityMap();
+        if (identityMap != null) {
+            distinctIds.stream()
+                    .map(identityMap::get)
+                    .filter(ar -> ar != null && (orgId == null || Objects.equals(((AR) ar).getOrgId(), orgId)))
+                    .forEach(ar -> arsById.put(((AR) ar).getId(), (AR) ar));
+        }
+
+        List<String> idsToLoad = distinctIds.stream().filter(id -> !arsById.containsKey(id)).toList();
+        Lists.partition(idsToLoad, BY_IDS_CHUNK_SIZE).forEach(chunk -> {
+            Query query = query(where(MONGO_ID).in(chunk));
+            if (orgId != null) {
+                query.addCriteria(where(AggregateRoot.Fields.orgId).is(orgId));
+            }
+            mongoTemplate.find(query, arClass).forEach(ar -> arsById.put(((AR) ar).getId(), (AR) loaded(ar)));
+        });
+
+        List<String> missingIds = distinctIds.stream().filter(id -> !arsById.containsKey(id)).toList();
+        if (isNotEmpty(missingIds)) {
+            throw new ServiceException(AR_NOT_FOUND, arType() + " not found.",
+                    mapOf("type", arType(), "ids", missingIds, "orgId", orgId));
+        }
+
+        return distinctIds.stream().map(arsById::get).toList();
+    }
+
+    // Saves all ARs in a single bulk write instead of one round trip per AR, with the same optimistic locking as MongoTemplate.save():
+    // new ARs(without version) are inserted with version 0, existing ARs are written only if their version in DB is still the loaded one,
+    // existing ARs are replaced as a whole, or only have their changes updated if partial update is enabled and they were snapshotted,
+    // the bulk is unordered as any failure rolls back the whole transaction anyway
+    private void bulkSave(List<AR> ars) {
+        MongoPersistentEntity<?> entity = mongoTemplate.getConverter().getMappingContext().getRequiredPersistentEntity(arClass);
+        MongoPersistentProperty versionProperty = entity.getRequiredVersionProperty();
+        String versionField = versionProperty.getFieldName();
+        BulkOperations operations = mongoTemplate.bulkOps(UNORDERED, arClass);
+        Map<String, Long> updatedVersions = new HashMap<>();
+        Map<AR, Document> writtenDocuments = new IdentityHashMap<>();
+
+        ars.forEach(ar -> {
+            Long version = (Long) entity.getPropertyAccessor(ar).getProperty(versionProperty);
+            Document document = toDocument(ar);
+            document.put(versionField, version == null ? 0L : version + 1);
+
+            if (version == null) {
+                operations.insert(document);
+                writtenDocuments.put(ar, document);
+                return;
+            }
+
+            Query query = query(where(MONGO_ID).is(ar.getId()).and(versionField).is(version));
+            Document snapshot = usePartialUpdate() ? snapshots.get(ar) : null;
+            if (snapshot == null) {
+                operations.replaceOne(query, document);
+            } else {
+                Update update = new Update();
+                diff(snapshot, document, "", versionField, update);
+                if (update.getUpdateObject().isEmpty()) {
+                    return; // Nothing changed, no need to write
+                }
+                operations.updateOne(query, update.set(versionField, version + 1));
+            }
+            updatedVersions.put(ar.getId(), version + 1);
+            writtenDocuments.put(ar, document);
+        });
+
+        if (writtenDocuments.isEmpty()) {
+            return;
+        }
+
+        BulkWriteResult result = operations.execute();
+        if (result.getMatchedCount() < updatedVersions.size()) {
+            throw new ServiceException(CONFLICT, arType() + "s have been modified by others, please reload and retry.",
+                    "arIds", conflictedIds(updatedVersions, versionField));
+        }
+
+        // Only update in-memory versions and snapshots after the write succeeded, just like MongoTemplate.save()
+        writtenDocuments.forEach((ar, document) -> {
+            entity.getPropertyAccessor(ar).setProperty(versionProperty, document.getLong(versionField));
+            if (usePartialUpdate()) {
+                snapshots.put(ar, document);
+            }
+        });
+    }
+
+    // Collects changed paths between the documents of the same AR, nested documents are diffed recursively,
+    // arrays and other values are set as a whole when changed, _id and version are left to the caller
+    private static void diff(Document before, Document after, String prefix, String versionField, Update update) {
+        after.forEach((key, value) -> {
+            if (prefix.isEmpty() && (MONGO_ID.equals(key) || versionField.equals(key))) {
+                return;
+            }
+
+            Object previous = before.get(key);
+            if (previous instanceof Document previousDocument && value instanceof Document document) {
+                diff(previousDocument, document, prefix + key + ".", versionField, update);
+            } else if (!before.containsKey(key) || !Objects.deepEquals(previous, value)) {
+                update.set(prefix + key, value);
+            }
+        });
+        before.keySet().stream()
+                .filter(key -> !after.containsKey(key))
+                .forEach(key -> update.unset(prefix + key));
+    }
+
+    private Document toDocument(AR ar) {
+        Document document = new Document();
+        mongoTemplate.getConverter().write(ar, document);
+        return document;
+    }
+
+    // ARs whose version in DB is not the one just written, either modified by others or deleted
+    private Set<String> conflictedIds(Map<String, Long> expectedVersions, String versionField) {
+        Query query = query(where(MONGO_ID).in(expectedVersions.keySet()));
+        query.fields().include(MONGO_ID, versionField);
+        Map<String, Object> actualVersions = new HashMap<>();
+        mongoTemplate.find(query, Document.class, mongoTemplate.getCollectionName(arClass))
+                .forEach(document -> actualVersions.put(document.getString(MONGO_ID), document.get(versionField)));
+
+        return expectedVersions.entrySet().stream()
+                .filter(entry -> !(actualVersions.get(entry.getKey()) instanceof Number actual && actual.longValue() == entry.getValue()))
+                .map(Map.Entry::getKey)
+                .collect(toImmutableSet());
     }
 
     private String arType() {
@@ -0,0 +1,52 @@
+package com.company.andy.common.mongo;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Identity map of ARs loaded or saved within the current transaction, keyed by AR class and then by AR ID,
+// the map is bound to the transaction and discarded when the transaction completes,
+// it is suspended together with the transaction, so that an inner REQUIRES_NEW transaction starts with its own map
+
+final class TransactionalIdentityMap {
+    private static final Object RESOURCE_KEY = TransactionalIdentityMap.class;
+
+    private TransactionalIdentityMap() {
+    }
+
+    // Returns null if there is no transaction, ARs are then always loaded from MongoDB
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> current(Class<?> arClass) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()
+            || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+
+        Map<Class<?>, Map<String, Object>> maps = (Map<Class<?>, Map<String, Object>>) TransactionSynchronizationManager.getResource(RESOURCE_KEY);
+        if (maps == null) {
+            Map<Class<?>, Map<String, Object>> newMaps = new HashMap<>();
+            TransactionSynchronizationManager.bindResource(RESOURCE_KEY, newMaps);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void suspend() {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(RESOURCE_KEY);
+                }
+
+                @Override
+                public void resume() {
+                    TransactionSynchronizationManager.bindResource(RESOURCE_KEY, newMaps);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(RESOURCE_KEY);
+                }
+            });
+            maps = newMaps;
+        }
+
+        return maps.computeIfAbsent(arClass, _ -> new HashMap<>());
+    }
+}
@@ -57,6 +57,7 @@ public class SecurityConfiguration {
         http.securityMatcher("/system/**", "/actuator/**")
                 .authorizeHttpRequests((authorize) -> authorize
                         .requestMatchers(POST, "/system/demo-reservations").permitAll()
+                        .requestMatchers(GET, "/actuator/metrics/**").hasRole(SYSTEM_ADMIN_ROLE)
                         .requestMatchers(GET, "/actuator/**").permitAll()
                         .anyRequest().hasRole(SYSTEM_ADMIN_ROLE)
                 )
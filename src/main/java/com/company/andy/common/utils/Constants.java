@@ -13,8 +13,12 @@ public class Constants {
 
     // Event
     public static final String KAFKA_DOMAIN_EVENT_TOPIC = "domain-event-topic";
+    public static final String KAFKA_DLT_SUFFIX = "-dlt";
+    public static final String KAFKA_CONTENT_TYPE_HEADER = "content-type";
     public static final String PUBLISHING_EVENT_COLLECTION = "publishing-event";
     public static final String CONSUMING_EVENT_COLLECTION = "consuming-event";
+    public static final String CONSUMING_EVENT_PAYLOAD_COLLECTION = "consuming-event-payload";
+    public static final String CHANGE_STREAM_RESUME_TOKEN_COLLECTION = "change-stream-resume-token";
 
     // Cache
     public static final String CACHE_PREFIX = "Cache:";
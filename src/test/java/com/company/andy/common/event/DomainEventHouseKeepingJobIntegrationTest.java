@@ -3,24 +3,38 @@ package com.company.andy.common.event;
 import com.company.andy.IntegrationTest;
 import com.company.andy.common.event.consume.ConsumingEvent;
 import com.company.andy.common.event.consume.ConsumingEventDao;
+import com.company.andy.common.event.consume.ConsumingEventPayload;
 import com.company.andy.common.event.publish.PublishingDomainEventDao;
 import com.company.andy.common.model.actor.OrgActor;
 import com.company.andy.feature.equipment.domain.Equipment;
 import com.company.andy.feature.equipment.domain.event.EquipmentCreatedEvent;
 import com.company.andy.feature.equipment.eventhandler.EquipmentCreatedEventHandler;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.Document;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.Date;
 import java.util.List;
+import java.util.stream.IntStream;
 
 import static com.company.andy.TestFixture.randomHumanUserOrgActor;
+import static com.company.andy.common.event.consume.ConsumingEventPayload.Fields.storedAt;
 import static com.company.andy.common.model.OrgRole.ORG_ADMIN;
+import static com.company.andy.common.utils.Constants.CONSUMING_EVENT_PAYLOAD_COLLECTION;
+import static com.company.andy.common.utils.Constants.MONGO_ID;
+import static com.company.andy.common.utils.Constants.PUBLISHING_EVENT_COLLECTION;
 import static com.company.andy.feature.equipment.EquipmentTestFixture.randomEquipmentName;
 import static java.time.Instant.now;
 import static java.time.temporal.ChronoUnit.DAYS;
+import static java.time.temporal.ChronoUnit.MILLIS;
+import static java.time.temporal.ChronoUnit.MINUTES;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.parallel.ExecutionMode.SAME_THREAD;
 
+@Execution(SAME_THREAD)
 class DomainEventHouseKeepingJobIntegrationTest extends IntegrationTest {
     @Autowired
     private ConsumingEventDao consumingEventDao;
@@ -34,6 +48,9 @@ class DomainEventHouseKeepingJobIntegrationTest extends IntegrationTest {
     @Autowired
     private EquipmentCreatedEventHandler equipmentCreatedEventHandler;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @Test
     void should_remove_old_publishing_domain_events_from_mongo() {
         OrgActor actor = randomHumanUserOrgActor(ORG_ADMIN);
@@ -45,7 +62,7 @@ class DomainEventHouseKeepingJobIntegrationTest extends IntegrationTest {
         assertNotNull(publishingDomainEventDao.byId(event1.getId()));
         assertNotNull(publishingDomainEventDao.byId(event2.getId()));
 
-        domainEventHouseKeepingJob.removeOldPublishingDomainEventsFromMongo(100);
+        domainEventHouseKeepingJob.removeOldPublishingDomainEventsFromMongo(100, now().plus(1, MINUTES));
 
         assertNull(publishingDomainEventDao.byId(event1.getId()));
         assertNotNull(publishingDomainEventDao.byId(event2.getId()));
@@ -65,9 +82,62 @@ class DomainEventHouseKeepingJobIntegrationTest extends IntegrationTest {
         assertTrue(consumingEventDao.exists(event1.getId(), equipmentCreatedEventHandler));
         assertTrue(consumingEventDao.exists(event2.getId(), equipmentCreatedEventHandler));
 
-        domainEventHouseKeepingJob.removeOldConsumingDomainEventsFromMongo(100);
+        domainEventHouseKeepingJob.removeOldConsumingDomainEventsFromMongo(100, now().plus(1, MINUTES));
 
         assertFalse(consumingEventDao.exists(event1.getId(), equipmentCreatedEventHandler));
         assertTrue(consumingEventDao.exists(event2.getId(), equipmentCreatedEventHandler));
     }
+
+    @Test
+    void should_remove_old_consuming_event_payloads_from_mongo() {
+        String oldEventId = "EVT" + System.nanoTime() + "1";
+        String newEventId = "EVT" + System.nanoTime() + "2";
+        mongoTemplate.insert(new Document(MONGO_ID, oldEventId).append(storedAt, Date.from(now().minus(110, DAYS))), CONSUMING_EVENT_PAYLOAD_COLLECTION);
+        mongoTemplate.insert(new Document(MONGO_ID, newEventId).append(storedAt, Date.from(now().minus(90, DAYS))), CONSUMING_EVENT_PAYLOAD_COLLECTION);
+
+        domainEventHouseKeepingJob.removeOldConsumingEventPayloadsFromMongo(100, now().plus(1, MINUTES));
+
+        assertNull(mongoTemplate.findById(oldEventId, ConsumingEventPayload.class));
+        assertNotNull(mongoTemplate.findById(newEventId, ConsumingEventPayload.class));
+    }
+
+    @Test
+    void should_remove_old_domain_events_across_multiple_chunks() {
+        List<DomainEvent> events = oldPublishingDomainEvents(2500); // Default chunk size is 1000
+        double chunks = meterRegistry.get("domain.event.housekeeping.chunks").tag("collection", PUBLISHING_EVENT_COLLECTION).counter().count();
+
+        domainEventHouseKeepingJob.removeOldPublishingDomainEventsFromMongo(100, now().plus(1, MINUTES));
+
+        events.forEach(event -> assertNull(publishingDomainEventDao.byId(event.getId())));
+        assertTrue(meterRegistry.get("domain.event.housekeeping.chunks").tag("collection", PUBLISHING_EVENT_COLLECTION).counter().count() >= chunks + 3);
+    }
+
+    @Test
+    void should_stop_removing_old_domain_events_at_deadline() {
+        List<DomainEvent> events = oldPublishingDomainEvents(1500);
+
+        domainEventHouseKeepingJob.removeOldPublishingDomainEventsFromMongo(100, now().minus(1, MILLIS));
+        events.forEach(event -> assertNotNull(publishingDomainEventDao.byId(event.getId())));
+
+        // The deadline passes during the pause after the first chunk, so the remaining events are left for the next run
+        domainEventHouseKeepingJob.removeOldPublishingDomainEventsFromMongo(100, now().plus(100, MILLIS));
+        long remaining = events.stream().filter(event -> publishingDomainEventDao.byId(event.getId()) != null).count();
+        assertTrue(remaining > 0 && remaining < events.size());
+
+        domainEventHouseKeepingJob.removeOldPublishingDomainEventsFromMongo(100, now().plus(1, MINUTES));
+        events.forEach(event -> assertNull(publishingDomainEventDao.byId(event.getId())));
+    }
+
+    private List<DomainEvent> oldPublishingDomainEvents(int count) {
+        OrgActor actor = randomHumanUserOrgActor(ORG_ADMIN);
+        List<DomainEvent> events = IntStream.range(0, count)
+                .mapToObj(_ -> {
+                    EquipmentCreatedEvent event = new EquipmentCreatedEvent(new Equipment(randomEquipmentName(), actor), actor);
+                    ReflectionTestUtils.setField(event, DomainEvent.Fields.raisedAt, now().minus(110, DAYS));
+                    return (DomainEvent) event;
+                })
+                .toList();
+        publishingDomainEventDao.stage(events);
+        return events;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,88 @@
+package com.company.andy.common.event;
+
+import com.company.andy.common.model.actor.OrgActor;
+import com.company.andy.feature.equipment.domain.Equipment;
+import com.company.andy.feature.equipment.domain.event.EquipmentCreatedEvent;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.dataformat.smile.SmileMapper;
+
+import static com.company.andy.TestFixture.randomHumanUserOrgActor;
+import static com.company.andy.common.configuration.CommonConfiguration.configureMapper;
+import static com.company.andy.common.event.DomainEventWireFormat.JSON;
+import static com.company.andy.common.event.DomainEventWireFormat.SMILE;
+import static com.company.andy.common.model.OrgRole.ORG_ADMIN;
+import static com.company.andy.common.utils.Constants.KAFKA_CONTENT_TYPE_HEADER;
+import static com.company.andy.feature.equipment.EquipmentTestFixture.randomEquipmentName;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.springframework.kafka.support.mapping.AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME;
+import static org.junit.jupiter.api.Assertions.*;
+
+class DomainEventSerializerTest {
+    private static final String TOPIC = "test-topic";
+    private final JsonMapper jsonMapper = configureMapper(JsonMapper.builder()).build();
+    private final SmileMapper smileMapper = configureMapper(SmileMapper.builder()).build();
+    private final DomainEventDeserializer deserializer = new DomainEventDeserializer(jsonMapper, smileMapper);
+
+    @Test
+    void should_serialize_and_deserialize_domain_event_in_json() {
+        EquipmentCreatedEvent event = randomEvent();
+        RecordHeaders headers = new RecordHeaders();
+
+        byte[] bytes = new DomainEventSerializer(jsonMapper, JSON).serialize(TOPIC, headers, event);
+
+        assertEquals(JSON.contentType(), new String(headers.lastHeader(KAFKA_CONTENT_TYPE_HEADER).value(), UTF_8));
+        assertEquals(EquipmentCreatedEvent.class.getName(), new String(headers.lastHeader(DEFAULT_CLASSID_FIELD_NAME).value(), UTF_8));
+        EquipmentCreatedEvent deserialized = (EquipmentCreatedEvent) deserializer.deserialize(TOPIC, headers, bytes);
+        assertEquals(event.getId(), deserialized.getId());
+        assertEquals(event.getArId(), deserialized.getArId());
+        assertEquals(event.getRaisedAt(), deserialized.getRaisedAt());
+    }
+
+    @Test
+    void should_serialize_and_deserialize_domain_event_in_smile() {
+        EquipmentCreatedEvent event = randomEvent();
+        RecordHeaders headers = new RecordHeaders();
+
+        byte[] bytes = new DomainEventSerializer(smileMapper, SMILE).serialize(TOPIC, headers, event);
+
+        assertEquals(SMILE.contentType(), new String(headers.lastHeader(KAFKA_CONTENT_TYPE_HEADER).value(), UTF_8));
+        assertNull(headers.lastHeader(DEFAULT_CLASSID_FIELD_NAME));
+        EquipmentCreatedEvent deserialized = (EquipmentCreatedEvent) deserializer.deserialize(TOPIC, headers, bytes);
+        assertEquals(event.getId(), deserialized.getId());
+        assertEquals(event.getArId(), deserialized.getArId());
+        assertEquals(event.getRaisedAt(), deserialized.getRaisedAt());
+    }
+
+    @Test
+    void should_serialize_domain_event_smaller_in_smile_than_in_json() {
+        EquipmentCreatedEvent event = randomEvent();
+
+        byte[] json = new DomainEventSerializer(jsonMapper, JSON).serialize(TOPIC, new RecordHeaders(), event);
+        byte[] smile = new DomainEventSerializer(smileMapper, SMILE).serialize(TOPIC, new RecordHeaders(), event);
+
+        assertTrue(smile.length < json.length);
+    }
+
+    @Test
+    void should_deserialize_records_without_content_type_as_json() {
+        EquipmentCreatedEvent event = randomEvent();
+
+        byte[] bytes = jsonMapper.writeValueAsBytes(event);
+
+        assertEquals(event.getId(), deserializer.deserialize(TOPIC, new RecordHeaders(), bytes).getId());
+    }
+
+    @Test
+    void should_pass_through_raw_bytes() {
+        byte[] bytes = "raw".getBytes(UTF_8);
+
+        assertSame(bytes, new DomainEventSerializer(smileMapper, SMILE).serialize(TOPIC, new RecordHeaders(), bytes));
+    }
+
+    private static EquipmentCreatedEvent randomEvent() {
+        OrgActor actor = randomHumanUserOrgActor(ORG_ADMIN);
+        return new EquipmentCreatedEvent(new Equipment(randomEquipmentName(), actor), actor);
+    }
+}
@@ -0,0 +1,150 @@
+package com.company.andy.common.event.consume;
+
+import com.company.andy.IntegrationTest;
+import com.company.andy.common.configuration.property.CommonProperties;
+import com.company.andy.common.event.DomainEvent;
+import com.company.andy.common.event.DomainEventHouseKeepingJob;
+import com.company.andy.common.model.actor.OrgActor;
+import com.company.andy.feature.equipment.domain.Equipment;
+import com.company.andy.feature.equipment.domain.event.EquipmentCreatedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.data.mongodb.core.query.Update;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static com.company.andy.TestFixture.randomHumanUserOrgActor;
+import static com.company.andy.common.event.consume.ConsumingEventRetention.*;
+import static com.company.andy.common.model.OrgRole.ORG_ADMIN;
+import static com.company.andy.common.utils.Constants.MONGO_ID;
+import static com.company.andy.feature.equipment.EquipmentTestFixture.randomEquipmentName;
+import static java.time.Instant.now;
+import static java.time.temporal.ChronoUnit.DAYS;
+import static java.time.temporal.ChronoUnit.MINUTES;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+class ConsumingEventRetentionIntegrationTest extends IntegrationTest {
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    @Autowired
+    private DomainEventHouseKeepingJob domainEventHouseKeepingJob;
+
+    @Autowired
+    private TestingEquipmentCreatedEventHandler testingEquipmentCreatedEventHandler;
+
+    @Autowired
+    private TestingUrgentEquipmentCreatedEventHandler testingUrgentEquipmentCreatedEventHandler;
+
+    @Test
+    void should_store_whole_event_in_every_record_for_full_retention() {
+        ConsumingEventDao dao = consumingEventDaoOf(FULL);
+        ConsumingEvent consumingEvent = newConsumingEvent();
+
+        dao.savePayloads(List.of(consumingEvent));
+        dao.markEventAsConsumedByHandler(consumingEvent, testingEquipmentCreatedEventHandler);
+
+        ConsumingEvent stored = storedConsumingEvent(consumingEvent, testingEquipmentCreatedEventHandler);
+        assertEquals(consumingEvent.getEventId(), ((DomainEvent) stored.getEvent()).getId());
+        assertNull(stored.getCompressedEvent());
+        assertNull(mongoTemplate.findById(consumingEvent.getEventId(), ConsumingEventPayload.class));
+    }
+
+    @Test
+    void should_store_no_event_for_id_only_retention() {
+        ConsumingEventDao dao = consumingEventDaoOf(ID_ONLY);
+        ConsumingEvent consumingEvent = newConsumingEvent();
+
+        dao.savePayloads(List.of(consumingEvent));
+        dao.markEventAsConsumedByHandler(consumingEvent, testingEquipmentCreatedEventHandler);
+
+        ConsumingEvent stored = storedConsumingEvent(consumingEvent, testingEquipmentCreatedEventHandler);
+        assertEquals(consumingEvent.getType(), stored.getType());
+        assertNotNull(stored.getConsumedAt());
+        assertNull(stored.getEvent());
+        assertNull(stored.getCompressedEvent());
+        assertNull(mongoTemplate.findById(consumingEvent.getEventId(), ConsumingEventPayload.class));
+    }
+
+    @Test
+    void should_store_gzip_compressed_event_for_compressed_retention() throws IOException {
+        ConsumingEventDao dao = consumingEventDaoOf(COMPRESSED);
+        ConsumingEvent consumingEvent = newConsumingEvent();
+
+        dao.savePayloads(List.of(consumingEvent));
+        dao.markEventAsConsumedByHandler(consumingEvent, testingEquipmentCreatedEventHandler);
+
+        ConsumingEvent stored = storedConsumingEvent(consumingEvent, testingEquipmentCreatedEventHandler);
+        assertNull(stored.getEvent());
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(stored.getCompressedEvent()))) {
+            DomainEvent decompressed = jsonMapper.readValue(gzip.readAllBytes(), DomainEvent.class);
+            assertEquals(consumingEvent.getEventId(), decompressed.getId());
+        }
+        assertNull(mongoTemplate.findById(consumingEvent.getEventId(), ConsumingEventPayload.class));
+    }
+
+    @Test
+    void should_store_event_once_for_all_handlers_for_reference_retention() {
+        ConsumingEventDao dao = consumingEventDaoOf(REFERENCE);
+        ConsumingEvent consumingEvent = newConsumingEvent();
+
+        dao.savePayloads(List.of(consumingEvent));
+        dao.markEventAsConsumedByHandler(consumingEvent, testingEquipmentCreatedEventHandler);
+        dao.savePayloads(List.of(consumingEvent)); // Redelivered
+        dao.markEventAsConsumedByHandler(consumingEvent, testingUrgentEquipmentCreatedEventHandler);
+
+        ConsumingEvent stored1 = storedConsumingEvent(consumingEvent, testingEquipmentCreatedEventHandler);
+        ConsumingEvent stored2 = storedConsumingEvent(consumingEvent, testingUrgentEquipmentCreatedEventHandler);
+        assertNull(stored1.getEvent());
+        assertNull(stored1.getCompressedEvent());
+        assertNull(stored2.getEvent());
+        assertNull(stored2.getCompressedEvent());
+        assertEquals(1, mongoTemplate.count(query(where(MONGO_ID).is(consumingEvent.getEventId())), ConsumingEventPayload.class));
+        ConsumingEventPayload payload = mongoTemplate.findById(consumingEvent.getEventId(), ConsumingEventPayload.class);
+        assertEquals(consumingEvent.getType(), payload.getType());
+        assertEquals(consumingEvent.getEventId(), ((DomainEvent) payload.getEvent()).getId());
+    }
+
+    @Test
+    void should_remove_old_payloads_of_reference_retention_by_house_keeping() {
+        ConsumingEventDao dao = consumingEventDaoOf(REFERENCE);
+        ConsumingEvent oldConsumingEvent = newConsumingEvent();
+        ConsumingEvent newConsumingEvent = newConsumingEvent();
+        dao.savePayloads(List.of(oldConsumingEvent, newConsumingEvent));
+        mongoTemplate.updateFirst(query(where(MONGO_ID).is(oldConsumingEvent.getEventId())),
+                new Update().set(ConsumingEventPayload.Fields.storedAt, now().minus(110, DAYS)), ConsumingEventPayload.class);
+
+        domainEventHouseKeepingJob.removeOldConsumingEventPayloadsFromMongo(100, now().plus(1, MINUTES));
+
+        assertNull(mongoTemplate.findById(oldConsumingEvent.getEventId(), ConsumingEventPayload.class));
+        assertNotNull(mongoTemplate.findById(newConsumingEvent.getEventId(), ConsumingEventPayload.class));
+    }
+
+    private ConsumingEventDao consumingEventDaoOf(ConsumingEventRetention retention) {
+        CommonProperties commonProperties = new Binder(new MapConfigurationPropertySource(Map.of("common.event-consume.retention", retention.name())))
+                .bindOrCreate("common", CommonProperties.class);
+        return new ConsumingEventDao(mongoTemplate, jsonMapper, commonProperties, new SimpleMeterRegistry());
+    }
+
+    private static ConsumingEvent newConsumingEvent() {
+        OrgActor actor = randomHumanUserOrgActor(ORG_ADMIN);
+        EquipmentCreatedEvent event = new EquipmentCreatedEvent(new Equipment(randomEquipmentName(), actor), actor);
+        return new ConsumingEvent(event.getId(), event);
+    }
+
+    private ConsumingEvent storedConsumingEvent(ConsumingEvent consumingEvent, AbstractEventHandler<?> handler) {
+        return mongoTemplate.findOne(query(where(ConsumingEvent.Fields.eventId).is(consumingEvent.getEventId())
+                .and(ConsumingEvent.Fields.handler).is(handler.getName())), ConsumingEvent.class);
+    }
+}
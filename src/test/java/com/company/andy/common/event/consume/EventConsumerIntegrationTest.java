@@ -1,8 +1,10 @@
 package com.company.andy.common.event.consume;
 
 import com.company.andy.IntegrationTest;
+import com.company.andy.common.event.DomainEvent;
 import com.company.andy.common.model.actor.OrgActor;
 import com.company.andy.feature.equipment.command.EquipmentCommandService;
+import com.company.andy.feature.equipment.domain.Equipment;
 import com.company.andy.feature.equipment.domain.EquipmentRepository;
 import com.company.andy.feature.equipment.domain.event.EquipmentCreatedEvent;
 import com.company.andy.feature.equipment.domain.event.EquipmentHolderUpdatedEvent;
@@ -10,13 +12,18 @@ import com.company.andy.feature.equipment.domain.event.EquipmentNameUpdatedEvent
 import com.company.andy.feature.maintenance.command.CreateMaintenanceRecordCommand;
 import com.company.andy.feature.maintenance.command.MaintenanceRecordCommandService;
 import com.company.andy.feature.maintenance.domain.event.MaintenanceRecordCreatedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
 
 import static com.company.andy.TestFixture.randomHumanUserOrgActor;
 import static com.company.andy.common.event.DomainEventType.*;
+import static com.company.andy.common.event.consume.EventConsumer.MARK_CHUNK_SIZE;
 import static com.company.andy.common.model.OrgRole.ORG_ADMIN;
 import static com.company.andy.feature.equipment.EquipmentTestFixture.*;
 import static com.company.andy.feature.maintenance.MaintenanceRecordTestFixture.randomCreateMaintenanceRecordCommand;
@@ -48,6 +55,9 @@ class EventConsumerIntegrationTest extends IntegrationTest {
     @Autowired
     private TestingEquipmentStatusUpdatedEventHandler testingEquipmentStatusUpdatedEventHandler;
 
+    @Autowired
+    private TestingNonTxEquipmentNameUpdatedEventHandler testingNonTxEquipmentNameUpdatedEventHandler;
+
     @Autowired
     private TestingEquipmentHolderUpdatedEventHandler testingEquipmentHolderUpdatedEventHandler;
 
@@ -63,6 +73,9 @@ class EventConsumerIntegrationTest extends IntegrationTest {
     @Autowired
     private EquipmentRepository equipmentRepository;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @Test
     void handlers_should_only_handle_events_that_can_be_handled() {
         OrgActor actor = randomHumanUserOrgActor(ORG_ADMIN);
@@ -208,4 +221,138 @@ class EventConsumerIntegrationTest extends IntegrationTest {
 
         assertEquals(createMaintenanceRecordCommand.status(), equipmentRepository.byId(equipmentId).getStatus());
     }
-}
\ No newline at end of file
+
+    @Test
+    void should_consume_batch_of_events_and_skip_duplicates() {
+        OrgActor actor = randomHumanUserOrgActor(ORG_ADMIN);
+        String equipmentId1 = equipmentCommandService.createEquipment(randomCreateEquipmentCommand(), actor);
+        String equipmentId2 = equipmentCommandService.createEquipment(randomCreateEquipmentCommand(), actor);
+        EquipmentCreatedEvent createdEvent1 = latestEventFor(equipmentId1, EQUIPMENT_CREATED_EVENT, EquipmentCreatedEvent.class);
+        EquipmentCreatedEvent createdEvent2 = latestEventFor(equipmentId2, EQUIPMENT_CREATED_EVENT, EquipmentCreatedEvent.class);
+
+        eventConsumer.consumeBatch(List.of(createdEvent1, createdEvent2, createdEvent1));
+
+        assertEquals(1,
+                testingEquipmentCreatedEventHandler.handledEvents.stream().filter(it -> it.event().getId().equals(createdEvent1.getId())).count());
+        assertEquals(1,
+                testingEquipmentCreatedEventHandler.handledEvents.stream().filter(it -> it.event().getId().equals(createdEvent2.getId())).count());
+        assertEquals(2,
+                testingIdempotentEquipmentCreatedEventHandler.handledEvents.stream().filter(it -> it.event().getId().equals(createdEvent1.getId()))
+                        .count());
+        assertTrue(consumingEventDao.exists(createdEvent1.getId(), testingEquipmentCreatedEventHandler));
+        assertTrue(consumingEventDao.exists(createdEvent2.getId(), testingEquipmentCreatedEventHandler));
+    }
+
+    @Test
+    void should_consume_duplicated_events_in_batch_only_once_by_non_transactional_handler() {
+        OrgActor actor = randomHumanUserOrgActor(ORG_ADMIN);
+        String equipmentId1 = equipmentCommandService.createEquipment(randomCreateEquipmentCommand(), actor);
+        String equipmentId2 = equipmentCommandService.createEquipment(randomCreateEquipmentCommand(), actor);
+        String equipmentId3 = equipmentCommandService.createEquipment(randomCreateEquipmentCommand(), actor);
+        equipmentCommandService.updateEquipmentName(equipmentId1, randomUpdateEquipmentNameCommand(), actor);
+        equipmentCommandService.updateEquipmentName(equipmentId2, randomUpdateEquipmentNameCommand(), actor);
+        equipmentCommandService.updateEquipmentHolder(equipmentId3, randomUpdateEquipmentHolderCommand(), actor);
+        EquipmentNameUpdatedEvent nameUpdatedEvent1 = latestEventFor(equipmentId1, EQUIPMENT_NAME_UPDATED_EVENT, EquipmentNameUpdatedEvent.class);
+        EquipmentNameUpdatedEvent nameUpdatedEvent2 = latestEventFor(equipmentId2, EQUIPMENT_NAME_UPDATED_EVENT, EquipmentNameUpdatedEvent.class);
+        EquipmentHolderUpdatedEvent holderUpdatedEvent = latestEventFor(equipmentId3, EQUIPMENT_HOLDER_UPDATED_EVENT,
+                EquipmentHolderUpdatedEvent.class);
+
+        eventConsumer.consumeBatch(List.of(nameUpdatedEvent1, nameUpdatedEvent1));
+
+        assertEquals(1, testingNonTxEquipmentNameUpdatedEventHandler.handledEvents.stream()
+                .filter(it -> it.event().getId().equals(nameUpdatedEvent1.getId())).count());
+
+        // The copy after the failed event is not attempted, but must not revert the consumed mark of the first copy
+        EventBatchConsumingException exception = assertThrows(EventBatchConsumingException.class,
+                () -> eventConsumer.consumeBatch(List.of(nameUpdatedEvent2, holderUpdatedEvent, nameUpdatedEvent2)));
+
+        assertEquals(1, exception.getFailedIndex());
+        assertEquals(1, testingNonTxEquipmentNameUpdatedEventHandler.handledEvents.stream()
+                .filter(it -> it.event().getId().equals(nameUpdatedEvent2.getId())).count());
+        assertTrue(consumingEventDao.exists(nameUpdatedEvent2.getId(), testingNonTxEquipmentNameUpdatedEventHandler));
+    }
+
+    @Test
+    void should_only_mark_events_of_current_chunk_before_handling_batch() {
+        OrgActor actor = randomHumanUserOrgActor(ORG_ADMIN);
+        List<DomainEvent> events = IntStream.range(0, MARK_CHUNK_SIZE + 1)
+                .mapToObj(_ -> (DomainEvent) new EquipmentNameUpdatedEvent(randomEquipmentName(), new Equipment(randomEquipmentName(), actor), actor))
+                .toList();
+        DomainEvent firstEvent = events.getFirst();
+        DomainEvent lastEvent = events.getLast();
+        AtomicBoolean lastEventMarkedWhenHandlingFirst = new AtomicBoolean(true);
+        testingNonTxEquipmentNameUpdatedEventHandler.beforeHandle = event -> {
+            if (event.getId().equals(firstEvent.getId())) {
+                lastEventMarkedWhenHandlingFirst.set(consumingEventDao.exists(lastEvent.getId(), testingNonTxEquipmentNameUpdatedEventHandler));
+            }
+        };
+
+        try {
+            eventConsumer.consumeBatch(events);
+        } finally {
+            testingNonTxEquipmentNameUpdatedEventHandler.beforeHandle = _ -> {
+            };
+        }
+
+        // A process killed while handling the first chunk only loses marks of that chunk
+        assertFalse(lastEventMarkedWhenHandlingFirst.get());
+        events.forEach(event -> assertTrue(consumingEventDao.exists(event.getId(), testingNonTxEquipmentNameUpdatedEventHandler)));
+    }
+
+    @Test
+    void should_stop_consuming_batch_at_failed_event() {
+        OrgActor actor = randomHumanUserOrgActor(ORG_ADMIN);
+        String equipmentId1 = equipmentCommandService.createEquipment(randomCreateEquipmentCommand(), actor);
+        String equipmentId2 = equipmentCommandService.createEquipment(randomCreateEquipmentCommand(), actor);
+        equipmentCommandService.updateEquipmentHolder(equipmentId1, randomUpdateEquipmentHolderCommand(), actor);
+        equipmentCommandService.updateEquipmentHolder(equipmentId2, randomUpdateEquipmentHolderCommand(), actor);
+        EquipmentCreatedEvent createdEvent = latestEventFor(equipmentId1, EQUIPMENT_CREATED_EVENT, EquipmentCreatedEvent.class);
+        EquipmentHolderUpdatedEvent holderUpdatedEvent1 = latestEventFor(equipmentId1, EQUIPMENT_HOLDER_UPDATED_EVENT,
+                EquipmentHolderUpdatedEvent.class);
+        EquipmentHolderUpdatedEvent holderUpdatedEvent2 = latestEventFor(equipmentId2, EQUIPMENT_HOLDER_UPDATED_EVENT,
+                EquipmentHolderUpdatedEvent.class);
+
+        EventBatchConsumingException exception = assertThrows(EventBatchConsumingException.class,
+                () -> eventConsumer.consumeBatch(List.of(createdEvent, holderUpdatedEvent1, holderUpdatedEvent2)));
+
+        assertEquals(1, exception.getFailedIndex());
+        assertTrue(consumingEventDao.exists(createdEvent.getId(), testingEquipmentCreatedEventHandler));
+        assertTrue(consumingEventDao.exists(holderUpdatedEvent1.getId(), testingErrorNonTxEquipmentHolderUpdatedEventHandler));
+        assertFalse(consumingEventDao.exists(holderUpdatedEvent2.getId(), testingErrorNonTxEquipmentHolderUpdatedEventHandler));
+        assertEquals(0, testingEquipmentHolderUpdatedEventHandler.handledEvents.stream()
+                .filter(it -> it.event().getId().equals(holderUpdatedEvent2.getId())).count());
+    }
+
+    @Test
+    void should_detect_duplicated_event_from_near_cache() {
+        OrgActor actor = randomHumanUserOrgActor(ORG_ADMIN);
+        String equipmentId = equipmentCommandService.createEquipment(randomCreateEquipmentCommand(), actor);
+        EquipmentCreatedEvent createdEvent = latestEventFor(equipmentId, EQUIPMENT_CREATED_EVENT, EquipmentCreatedEvent.class);
+        eventConsumer.consumeDomainEvent(createdEvent);
+        double nearCacheHits = meterRegistry.counter("event.consume.dedup.check", "source", "near-cache").count();
+
+        // consume again
+        eventConsumer.consumeDomainEvent(createdEvent);
+
+        assertTrue(meterRegistry.counter("event.consume.dedup.check", "source", "near-cache").count() > nearCacheHits);
+        assertEquals(1,
+                testingEquipmentCreatedEventHandler.handledEvents.stream().filter(it -> it.event().getId().equals(createdEvent.getId())).count());
+    }
+
+    @Test
+    void should_record_handler_metrics() {
+        OrgActor actor = randomHumanUserOrgActor(ORG_ADMIN);
+        String equipmentId = equipmentCommandService.createEquipment(randomCreateEquipmentCommand(), actor);
+        EquipmentCreatedEvent createdEvent = latestEventFor(equipmentId, EQUIPMENT_CREATED_EVENT, EquipmentCreatedEvent.class);
+        String handler = TestingEquipmentCreatedEventHandler.class.getSimpleName();
+        String type = EQUIPMENT_CREATED_EVENT.name();
+
+        eventConsumer.consumeDomainEvent(createdEvent);
+        eventConsumer.consumeDomainEvent(createdEvent);
+
+        assertTrue(meterRegistry.get("event.consume.handle").tags("handler", handler, "type", type).timer().count() >= 1);
+        assertTrue(meterRegistry.get("event.consume.transaction").tags("handler", handler, "type", type).timer().count() >= 2);
+        assertTrue(meterRegistry.get("event.consume.end.to.end.latency").tags("handler", handler, "type", type).timer().count() >= 1);
+        assertTrue(meterRegistry.get("event.consume.skipped").tags("handler", handler, "type", type).counter().count() >= 1);
+    }
+}
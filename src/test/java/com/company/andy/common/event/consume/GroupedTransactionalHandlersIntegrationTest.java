@@ -0,0 +1,54 @@
+package com.company.andy.common.event.consume;
+
+import com.company.andy.IntegrationTest;
+import com.company.andy.common.model.actor.OrgActor;
+import com.company.andy.feature.equipment.command.EquipmentCommandService;
+import com.company.andy.feature.equipment.domain.event.EquipmentHolderUpdatedEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import static com.company.andy.TestFixture.randomHumanUserOrgActor;
+import static com.company.andy.common.event.DomainEventType.EQUIPMENT_HOLDER_UPDATED_EVENT;
+import static com.company.andy.common.model.OrgRole.ORG_ADMIN;
+import static com.company.andy.feature.equipment.EquipmentTestFixture.randomCreateEquipmentCommand;
+import static com.company.andy.feature.equipment.EquipmentTestFixture.randomUpdateEquipmentHolderCommand;
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestPropertySource(properties = "common.event-consume.group-transactional-handlers=true")
+class GroupedTransactionalHandlersIntegrationTest extends IntegrationTest {
+
+    @Autowired
+    private EquipmentCommandService equipmentCommandService;
+
+    @Autowired
+    private ConsumingEventDao consumingEventDao;
+
+    @Autowired
+    private TestingEquipmentUpdatedEventHandler testingEquipmentUpdatedEventHandler;
+
+    @Autowired
+    private TestingEquipmentHolderUpdatedEventHandler testingEquipmentHolderUpdatedEventHandler;
+
+    @Autowired
+    private TestingErrorNonTxEquipmentHolderUpdatedEventHandler testingErrorNonTxEquipmentHolderUpdatedEventHandler;
+
+    @Autowired
+    private TestingErrorTxEquipmentHolderUpdatedEventHandler testingErrorTxEquipmentHolderUpdatedEventHandler;
+
+    @Test
+    void should_fallback_to_one_transaction_per_handler_if_grouped_transaction_fails() {
+        OrgActor actor = randomHumanUserOrgActor(ORG_ADMIN);
+        String equipmentId = equipmentCommandService.createEquipment(randomCreateEquipmentCommand(), actor);
+        equipmentCommandService.updateEquipmentHolder(equipmentId, randomUpdateEquipmentHolderCommand(), actor);
+        EquipmentHolderUpdatedEvent holderUpdatedEvent = latestEventFor(equipmentId, EQUIPMENT_HOLDER_UPDATED_EVENT,
+                EquipmentHolderUpdatedEvent.class);
+
+        assertThrows(RuntimeException.class, () -> eventConsumer.consumeDomainEvent(holderUpdatedEvent));
+
+        assertTrue(consumingEventDao.exists(holderUpdatedEvent.getId(), testingEquipmentHolderUpdatedEventHandler));
+        assertTrue(consumingEventDao.exists(holderUpdatedEvent.getId(), testingEquipmentUpdatedEventHandler));
+        assertTrue(consumingEventDao.exists(holderUpdatedEvent.getId(), testingErrorNonTxEquipmentHolderUpdatedEventHandler));
+        assertFalse(consumingEventDao.exists(holderUpdatedEvent.getId(), testingErrorTxEquipmentHolderUpdatedEventHandler));
+    }
+}
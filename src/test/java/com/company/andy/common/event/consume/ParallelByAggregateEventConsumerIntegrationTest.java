@@ -0,0 +1,117 @@
+package com.company.andy.common.event.consume;
+
+import com.company.andy.IntegrationTest;
+import com.company.andy.common.event.DomainEvent;
+import com.company.andy.common.model.actor.OrgActor;
+import com.company.andy.feature.equipment.domain.Equipment;
+import com.company.andy.feature.equipment.domain.event.EquipmentHolderUpdatedEvent;
+import com.company.andy.feature.equipment.domain.event.EquipmentNameUpdatedEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+
+import static com.company.andy.TestFixture.randomHumanUserOrgActor;
+import static com.company.andy.common.model.OrgRole.ORG_ADMIN;
+import static com.company.andy.feature.equipment.EquipmentTestFixture.randomEquipmentName;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.parallel.ExecutionMode.SAME_THREAD;
+
+@Execution(SAME_THREAD)
+@TestPropertySource(properties = "common.event-consume.parallel-by-aggregate=true")
+class ParallelByAggregateEventConsumerIntegrationTest extends IntegrationTest {
+
+    @Autowired
+    private ConsumingEventDao consumingEventDao;
+
+    @Autowired
+    private TestingNonTxEquipmentNameUpdatedEventHandler testingNonTxEquipmentNameUpdatedEventHandler;
+
+    @AfterEach
+    void tearDown() {
+        testingNonTxEquipmentNameUpdatedEventHandler.beforeHandle = _ -> {
+        };
+    }
+
+    @Test
+    void should_consume_events_of_same_aggregate_in_order_and_different_aggregates_concurrently() {
+        OrgActor actor = randomHumanUserOrgActor(ORG_ADMIN);
+        Equipment equipment1 = new Equipment(randomEquipmentName(), actor);
+        Equipment equipment2 = new Equipment(randomEquipmentName(), actor);
+        List<DomainEvent> events1 = List.of(nameUpdatedEvent(equipment1, actor), nameUpdatedEvent(equipment1, actor), nameUpdatedEvent(equipment1, actor));
+        List<DomainEvent> events2 = List.of(nameUpdatedEvent(equipment2, actor), nameUpdatedEvent(equipment2, actor), nameUpdatedEvent(equipment2, actor));
+        Set<String> firstEventIds = Set.of(events1.getFirst().getId(), events2.getFirst().getId());
+
+        // The first events of both aggregates can only pass the barrier together if they are handled concurrently
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        Map<String, String> mdcOfHandling = new ConcurrentHashMap<>();
+        testingNonTxEquipmentNameUpdatedEventHandler.beforeHandle = event -> {
+            if (firstEventIds.contains(event.getId())) {
+                mdcOfHandling.put(event.getId(), String.valueOf(MDC.get("batchId")));
+                try {
+                    barrier.await(5, SECONDS);
+                } catch (Exception e) {
+                    throw new RuntimeException("Events of different aggregates are not handled concurrently.", e);
+                }
+            }
+        };
+
+        MDC.put("batchId", "parallel-batch");
+        try {
+            eventConsumer.consumeBatch(List.of(events1.get(0), events2.get(0), events1.get(1), events2.get(1), events1.get(2), events2.get(2)));
+        } finally {
+            MDC.remove("batchId");
+        }
+
+        assertEquals(events1.stream().map(DomainEvent::getId).toList(), handledEventIdsOf(equipment1.getId()));
+        assertEquals(events2.stream().map(DomainEvent::getId).toList(), handledEventIdsOf(equipment2.getId()));
+        assertEquals(Map.of(events1.getFirst().getId(), "parallel-batch", events2.getFirst().getId(), "parallel-batch"), mdcOfHandling);
+    }
+
+    @Test
+    void should_leave_not_attempted_events_of_failed_aggregate_unmarked_for_redelivery() {
+        OrgActor actor = randomHumanUserOrgActor(ORG_ADMIN);
+        Equipment equipment1 = new Equipment(randomEquipmentName(), actor);
+        Equipment equipment2 = new Equipment(randomEquipmentName(), actor);
+        EquipmentNameUpdatedEvent nameUpdatedEvent1 = nameUpdatedEvent(equipment1, actor);
+        EquipmentHolderUpdatedEvent holderUpdatedEvent2 = new EquipmentHolderUpdatedEvent(null, randomEquipmentName(), equipment2, actor);
+        EquipmentNameUpdatedEvent nameUpdatedEvent2 = nameUpdatedEvent(equipment2, actor);
+
+        EventBatchConsumingException exception = assertThrows(EventBatchConsumingException.class,
+                () -> eventConsumer.consumeBatch(List.of(nameUpdatedEvent1, holderUpdatedEvent2, nameUpdatedEvent2)));
+
+        assertEquals(1, exception.getFailedIndex());
+        assertTrue(consumingEventDao.exists(nameUpdatedEvent1.getId(), testingNonTxEquipmentNameUpdatedEventHandler));
+        assertFalse(consumingEventDao.exists(nameUpdatedEvent2.getId(), testingNonTxEquipmentNameUpdatedEventHandler));
+        assertEquals(List.of(nameUpdatedEvent1.getId()), handledEventIdsOf(equipment1.getId()));
+        assertEquals(List.of(), handledEventIdsOf(equipment2.getId()));
+
+        // Redelivered from the failed index, the event after the failed one is consumed this time
+        eventConsumer.consumeBatch(List.of(nameUpdatedEvent2));
+
+        assertTrue(consumingEventDao.exists(nameUpdatedEvent2.getId(), testingNonTxEquipmentNameUpdatedEventHandler));
+        assertEquals(List.of(nameUpdatedEvent2.getId()), handledEventIdsOf(equipment2.getId()));
+    }
+
+    private static EquipmentNameUpdatedEvent nameUpdatedEvent(Equipment equipment, OrgActor actor) {
+        return new EquipmentNameUpdatedEvent(randomEquipmentName(), equipment, actor);
+    }
+
+    private List<String> handledEventIdsOf(String arId) {
+        synchronized (testingNonTxEquipmentNameUpdatedEventHandler.handledEvents) {
+            return testingNonTxEquipmentNameUpdatedEventHandler.handledEvents.stream()
+                    .filter(it -> it.event().getArId().equals(arId))
+                    .map(it -> it.event().getId())
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.company.andy.common.event.consume;
+
+import com.company.andy.common.model.actor.SystemActor;
+import com.company.andy.feature.equipment.domain.event.EquipmentNameUpdatedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TestingNonTxEquipmentNameUpdatedEventHandler extends AbstractEventHandler<EquipmentNameUpdatedEvent> {
+    public List<HandledEvent> handledEvents = Collections.synchronizedList(new ArrayList<>());
+    public volatile Consumer<EquipmentNameUpdatedEvent> beforeHandle = _ -> {
+    };
+
+    @Override
+    protected void handle(EquipmentNameUpdatedEvent event, SystemActor actor) {
+        this.beforeHandle.accept(event);
+        this.handledEvents.add(new HandledEvent(event, Instant.now()));
+    }
+
+    @Override
+    public boolean isTransactional() {
+        return false;
+    }
+}
@@ -0,0 +1,183 @@
+package com.company.andy.common.event.consume.infrastructure;
+
+import com.company.andy.common.configuration.property.CommonProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.company.andy.common.event.consume.infrastructure.SpringKafkaEventListener.DOMAIN_EVENT_LISTENER_ID;
+import static java.time.Duration.ofSeconds;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+
+@ExtendWith(MockitoExtension.class)
+class DomainEventListenerConcurrencyScalerTest {
+
+    @Mock
+    private KafkaListenerEndpointRegistry kafkaListenerEndpointRegistry;
+
+    @Mock
+    private ConcurrentMessageListenerContainer<String, Object> container;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setUp() {
+        Mockito.lenient().when(kafkaListenerEndpointRegistry.getListenerContainer(DOMAIN_EVENT_LISTENER_ID)).thenReturn(container);
+        Mockito.lenient().when(container.isRunning()).thenReturn(true);
+    }
+
+    @Test
+    void should_scale_up_by_one_consumer_if_lag_exceeds_scale_up_lag() {
+        DomainEventListenerConcurrencyScaler scaler = scaler(Map.of());
+        runningWith(3, 2000);
+
+        scaler.scale();
+
+        Mockito.verify(container).setConcurrency(4);
+        Mockito.verify(container).stop(any(Runnable.class));
+    }
+
+    @Test
+    void should_not_scale_up_beyond_max_concurrency() {
+        DomainEventListenerConcurrencyScaler scaler = scaler(Map.of());
+        runningWith(12, 2000);
+
+        scaler.scale();
+
+        Mockito.verify(container, Mockito.never()).setConcurrency(anyInt());
+    }
+
+    @Test
+    void should_scale_down_by_one_consumer_if_lag_is_low_and_handlers_are_mostly_idle() {
+        DomainEventListenerConcurrencyScaler scaler = scaler(Map.of());
+        runningWith(3, 5);
+
+        scaler.scale();
+
+        Mockito.verify(container).setConcurrency(2);
+        Mockito.verify(container).stop(any(Runnable.class));
+    }
+
+    @Test
+    void should_not_scale_down_if_handlers_are_busy_although_lag_is_low() {
+        DomainEventListenerConcurrencyScaler scaler = scaler(Map.of());
+        runningWith(3, 5);
+        Timer.builder("event.consume.handle").register(meterRegistry).record(ofSeconds(30)); // Way more than half of the elapsed time of 3 consumers
+
+        scaler.scale();
+
+        Mockito.verify(container, Mockito.never()).setConcurrency(anyInt());
+    }
+
+    @Test
+    void should_not_scale_down_below_min_concurrency() {
+        DomainEventListenerConcurrencyScaler scaler = scaler(Map.of());
+        runningWith(1, 5);
+
+        scaler.scale();
+
+        Mockito.verify(container, Mockito.never()).setConcurrency(anyInt());
+    }
+
+    @Test
+    void should_keep_concurrency_if_lag_is_between_scale_down_lag_and_scale_up_lag() {
+        DomainEventListenerConcurrencyScaler scaler = scaler(Map.of());
+        runningWith(3, 500);
+
+        scaler.scale();
+
+        Mockito.verify(container, Mockito.never()).setConcurrency(anyInt());
+    }
+
+    @Test
+    void should_not_scale_again_within_cooldown() {
+        DomainEventListenerConcurrencyScaler scaler = scaler(Map.of());
+        runningWith(3, 2000);
+
+        scaler.scale();
+        scaler.scale();
+
+        Mockito.verify(container, Mockito.times(1)).setConcurrency(anyInt());
+    }
+
+    @Test
+    void should_scale_again_after_cooldown() {
+        DomainEventListenerConcurrencyScaler scaler = scaler(Map.of("common.event-listener-scaling.cooldown", "0s"));
+        runningWith(3, 2000);
+
+        scaler.scale();
+        scaler.scale();
+
+        Mockito.verify(container, Mockito.times(2)).setConcurrency(4);
+    }
+
+    @Test
+    void should_not_scale_if_disabled() {
+        DomainEventListenerConcurrencyScaler scaler = scaler(Map.of("common.event-listener-scaling.enabled", "false"));
+        runningWith(3, 2000);
+
+        scaler.scale();
+
+        Mockito.verify(container, Mockito.never()).setConcurrency(anyInt());
+    }
+
+    @Test
+    void should_not_scale_if_listener_is_not_running() {
+        DomainEventListenerConcurrencyScaler scaler = scaler(Map.of());
+        Mockito.when(container.isRunning()).thenReturn(false);
+
+        scaler.scale();
+
+        Mockito.verify(container, Mockito.never()).setConcurrency(anyInt());
+    }
+
+    // Scaling is enabled between 1 and 12 consumers with scaleUpLag 1000, scaleDownLag 10 and the default cooldown unless overridden
+    private DomainEventListenerConcurrencyScaler scaler(Map<String, String> overrides) {
+        Map<String, String> properties = new HashMap<>(Map.of(
+                "common.event-listener-scaling.enabled", "true",
+                "common.event-listener-scaling.min-concurrency", "1"));
+        properties.putAll(overrides);
+        CommonProperties commonProperties = new Binder(new MapConfigurationPropertySource(properties)).bindOrCreate("common", CommonProperties.class);
+        return new DomainEventListenerConcurrencyScaler(kafkaListenerEndpointRegistry, meterRegistry, commonProperties);
+    }
+
+    // Stubs the container with the given concurrency and the total lag split over two consumers
+    private void runningWith(int concurrency, long lag) {
+        Map<String, Map<MetricName, Metric>> metrics = Map.of(
+                "consumer-0", lagMetricOf("0", lag / 2),
+                "consumer-1", lagMetricOf("1", lag - lag / 2));
+        Mockito.lenient().when(container.getConcurrency()).thenReturn(concurrency);
+        Mockito.lenient().doReturn(metrics).when(container).metrics();
+    }
+
+    private static Map<MetricName, Metric> lagMetricOf(String partition, long lag) {
+        MetricName name = new MetricName("records-lag", "consumer-fetch-manager-metrics", "", Map.of("partition", partition));
+        return Map.of(name, new Metric() {
+            @Override
+            public MetricName metricName() {
+                return name;
+            }
+
+            @Override
+            public Object metricValue() {
+                return (double) lag;
+            }
+        });
+    }
+}
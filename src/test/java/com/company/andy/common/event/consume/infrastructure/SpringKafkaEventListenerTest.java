@@ -0,0 +1,104 @@
+package com.company.andy.common.event.consume.infrastructure;
+
+import com.company.andy.common.event.DomainEvent;
+import com.company.andy.common.event.consume.EventBatchConsumingException;
+import com.company.andy.common.event.consume.EventConsumer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.kafka.annotation.RetryTopicConfigurationProvider;
+import org.springframework.kafka.core.KafkaOperations;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.retrytopic.DestinationTopic;
+import org.springframework.kafka.retrytopic.RetryTopicConfiguration;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static com.company.andy.common.utils.Constants.KAFKA_DLT_SUFFIX;
+import static com.company.andy.common.utils.Constants.KAFKA_DOMAIN_EVENT_TOPIC;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class SpringKafkaEventListenerTest {
+
+    @Mock
+    private EventConsumer eventConsumer;
+
+    @InjectMocks
+    private SpringKafkaEventListener listener;
+
+    @Test
+    void should_retry_domain_events_through_indexed_retry_topics_before_dead_letter_topic() throws NoSuchMethodException {
+        RetryTopicConfiguration configuration = retryTopicConfiguration(Map.of());
+
+        List<DestinationTopic.Properties> properties = configuration.getDestinationTopicProperties();
+        assertEquals(List.of(KAFKA_DOMAIN_EVENT_TOPIC,
+                        KAFKA_DOMAIN_EVENT_TOPIC + "-retry-0",
+                        KAFKA_DOMAIN_EVENT_TOPIC + "-retry-1",
+                        KAFKA_DOMAIN_EVENT_TOPIC + "-retry-2",
+                        KAFKA_DOMAIN_EVENT_TOPIC + KAFKA_DLT_SUFFIX),
+                properties.stream().map(it -> KAFKA_DOMAIN_EVENT_TOPIC + it.suffix()).toList());
+        assertTrue(properties.getFirst().isMainEndpoint());
+        assertTrue(properties.subList(1, 4).stream().allMatch(DestinationTopic.Properties::isRetryTopic));
+        assertEquals(List.of(1000L, 10000L, 60000L), properties.subList(1, 4).stream().map(DestinationTopic.Properties::delay).toList());
+        assertTrue(properties.getLast().isDltTopic());
+    }
+
+    @Test
+    void should_route_dead_domain_events_to_dlt_handler() throws NoSuchMethodException {
+        RetryTopicConfiguration configuration = retryTopicConfiguration(Map.of());
+
+        assertEquals("handleDeadDomainEvent", configuration.getDltHandlerMethod().getMethodName());
+        assertTrue(configuration.getDestinationTopicProperties().getLast().autoStartDltHandler());
+    }
+
+    @Test
+    void should_not_auto_start_dlt_handler_when_batch_listener_is_used() throws NoSuchMethodException {
+        RetryTopicConfiguration configuration = retryTopicConfiguration(Map.of("common.event-consume.batch-listener", "true"));
+
+        assertFalse(configuration.getDestinationTopicProperties().getLast().autoStartDltHandler());
+    }
+
+    @Test
+    void should_report_failed_index_of_batch_to_error_handler() {
+        List<DomainEvent> events = List.of(Mockito.mock(DomainEvent.class), Mockito.mock(DomainEvent.class), Mockito.mock(DomainEvent.class));
+        Mockito.doThrow(new EventBatchConsumingException("Failed.", 1, new RuntimeException()))
+                .when(eventConsumer).consumeBatch(events);
+
+        BatchListenerFailedException exception = assertThrows(BatchListenerFailedException.class, () -> listener.listenDomainEvents(events));
+
+        assertEquals(1, exception.getIndex());
+    }
+
+    @Test
+    void should_consume_events_before_undeserializable_one_and_report_its_index() {
+        DomainEvent event1 = Mockito.mock(DomainEvent.class);
+        DomainEvent event2 = Mockito.mock(DomainEvent.class);
+        List<DomainEvent> events = Arrays.asList(event1, event2, null, Mockito.mock(DomainEvent.class));
+
+        BatchListenerFailedException exception = assertThrows(BatchListenerFailedException.class, () -> listener.listenDomainEvents(events));
+
+        assertEquals(2, exception.getIndex());
+        Mockito.verify(eventConsumer).consumeBatch(List.of(event1, event2));
+    }
+
+    // Resolves @RetryableTopic of the listener the same way as Spring Kafka does when registering the endpoints
+    private RetryTopicConfiguration retryTopicConfiguration(Map<String, Object> properties) throws NoSuchMethodException {
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("test", properties));
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.addEmbeddedValueResolver(environment::resolvePlaceholders);
+        beanFactory.registerSingleton("kafkaTemplate", Mockito.mock(KafkaOperations.class));
+
+        return new RetryTopicConfigurationProvider(beanFactory).findRetryConfigurationFor(new String[]{KAFKA_DOMAIN_EVENT_TOPIC},
+                SpringKafkaEventListener.class.getMethod("listenDomainEvent", DomainEvent.class), listener);
+    }
+}
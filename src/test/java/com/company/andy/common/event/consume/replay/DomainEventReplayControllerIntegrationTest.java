@@ -0,0 +1,84 @@
+package com.company.andy.common.event.consume.replay;
+
+import com.company.andy.IntegrationTest;
+import com.company.andy.common.exception.QApiErrorResponse;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import static com.company.andy.TestFixture.randomHumanUserOrgActor;
+import static com.company.andy.TestFixture.randomHumanUserSystemActor;
+import static com.company.andy.common.event.consume.replay.DomainEventReplayProgress.Status.RUNNING;
+import static com.company.andy.common.exception.ErrorCode.ACCESS_DENIED;
+import static com.company.andy.common.model.OrgRole.ORG_ADMIN;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+
+// DomainEventReplayer and its controller are disabled for integration tests as they need Kafka,
+// the controller is registered here with a mocked replayer to verify access control of the endpoints
+
+class DomainEventReplayControllerIntegrationTest extends IntegrationTest {
+
+    @MockitoBean
+    private DomainEventReplayer domainEventReplayer;
+
+    @Test
+    void system_admin_should_start_domain_event_replay() {
+        ReplayDomainEventsCommand command = ReplayDomainEventsCommand.builder().maxPerSecond(10).build();
+        Mockito.when(domainEventReplayer.start(command)).thenReturn(DomainEventReplayProgress.builder().id("RPL123").status(RUNNING).build());
+
+        DomainEventReplayProgress progress = restTestClient.post()
+                .uri("/system/domain-event-replays").headers(authHeaderOf(randomHumanUserSystemActor()))
+                .body(command)
+                .exchange().expectStatus().isCreated()
+                .expectBody(DomainEventReplayProgress.class).returnResult().getResponseBody();
+
+        assertEquals("RPL123", progress.id());
+        assertEquals(RUNNING, progress.status());
+    }
+
+    @Test
+    void should_throw_403_error_if_org_actor_starts_domain_event_replay() {
+        QApiErrorResponse response = restTestClient.post()
+                .uri("/system/domain-event-replays").headers(authHeaderOf(randomHumanUserOrgActor(ORG_ADMIN)))
+                .body(ReplayDomainEventsCommand.builder().maxPerSecond(10).build())
+                .exchange().expectStatus().isForbidden()
+                .expectBody(QApiErrorResponse.class).returnResult().getResponseBody();
+
+        assertEquals(ACCESS_DENIED, response.error().code());
+        Mockito.verify(domainEventReplayer, Mockito.never()).start(any());
+    }
+
+    @Test
+    void should_throw_403_error_if_org_actor_reads_or_stops_domain_event_replay() {
+        restTestClient.get()
+                .uri("/system/domain-event-replays/current").headers(authHeaderOf(randomHumanUserOrgActor(ORG_ADMIN)))
+                .exchange().expectStatus().isForbidden();
+
+        restTestClient.delete()
+                .uri("/system/domain-event-replays/current").headers(authHeaderOf(randomHumanUserOrgActor(ORG_ADMIN)))
+                .exchange().expectStatus().isForbidden();
+
+        Mockito.verifyNoInteractions(domainEventReplayer);
+    }
+
+    @Test
+    void should_throw_401_error_if_jwt_not_provided_for_domain_event_replay() {
+        restTestClient.post()
+                .uri("/system/domain-event-replays")
+                .body(ReplayDomainEventsCommand.builder().maxPerSecond(10).build())
+                .exchange().expectStatus().isUnauthorized();
+
+        Mockito.verifyNoInteractions(domainEventReplayer);
+    }
+
+    @TestConfiguration
+    static class DomainEventReplayControllerConfiguration {
+        @Bean
+        DomainEventReplayController domainEventReplayController(DomainEventReplayer domainEventReplayer) {
+            return new DomainEventReplayController(domainEventReplayer);
+        }
+    }
+}
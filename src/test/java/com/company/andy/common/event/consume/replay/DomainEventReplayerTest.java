@@ -0,0 +1,165 @@
+package com.company.andy.common.event.consume.replay;
+
+import com.company.andy.common.event.DomainEvent;
+import com.company.andy.common.event.consume.EventConsumer;
+import com.company.andy.common.model.actor.OrgActor;
+import com.company.andy.feature.equipment.domain.Equipment;
+import com.company.andy.feature.equipment.domain.event.EquipmentCreatedEvent;
+import com.company.andy.feature.equipment.domain.event.EquipmentNameUpdatedEvent;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static com.company.andy.TestFixture.randomHumanUserOrgActor;
+import static com.company.andy.common.event.DomainEventType.EQUIPMENT_CREATED_EVENT;
+import static com.company.andy.common.event.consume.replay.DomainEventReplayProgress.Status.COMPLETED;
+import static com.company.andy.common.model.OrgRole.ORG_ADMIN;
+import static com.company.andy.common.utils.Constants.KAFKA_DLT_SUFFIX;
+import static com.company.andy.common.utils.Constants.KAFKA_DOMAIN_EVENT_TOPIC;
+import static com.company.andy.feature.equipment.EquipmentTestFixture.randomEquipmentName;
+import static java.lang.System.nanoTime;
+import static java.time.Instant.now;
+import static java.time.temporal.ChronoUnit.DAYS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+
+@ExtendWith(MockitoExtension.class)
+class DomainEventReplayerTest {
+    private static final String DLT_TOPIC = KAFKA_DOMAIN_EVENT_TOPIC + KAFKA_DLT_SUFFIX;
+    private static final TopicPartition PARTITION = new TopicPartition(DLT_TOPIC, 0);
+
+    @Mock
+    private ConsumerFactory<Object, Object> consumerFactory;
+
+    @Mock
+    private EventConsumer eventConsumer;
+
+    private DltConsumer consumer;
+
+    private DomainEventReplayer replayer;
+
+    @BeforeEach
+    void setUp() {
+        consumer = new DltConsumer();
+        consumer.updatePartitions(DLT_TOPIC, List.of(new PartitionInfo(DLT_TOPIC, 0, null, null, null)));
+        consumer.updateBeginningOffsets(Map.of(PARTITION, 0L));
+        Mockito.when(consumerFactory.createConsumer(anyString(), isNull(), isNull(), any())).thenReturn(consumer);
+        replayer = new DomainEventReplayer(consumerFactory, eventConsumer, new SyncTaskExecutor()); // Replays synchronously within start()
+    }
+
+    @Test
+    void should_only_replay_domain_events_matching_filters() {
+        OrgActor actor = randomHumanUserOrgActor(ORG_ADMIN);
+        OrgActor otherActor = randomHumanUserOrgActor(ORG_ADMIN);
+        Instant raisedFrom = now().minus(10, DAYS);
+        Instant raisedTo = now().minus(5, DAYS);
+        DomainEvent matched = createdEvent(actor, now().minus(7, DAYS));
+        DomainEvent otherType = raisedAt(new EquipmentNameUpdatedEvent(randomEquipmentName(), new Equipment(randomEquipmentName(), actor), actor),
+                now().minus(7, DAYS));
+        DomainEvent otherOrg = createdEvent(otherActor, now().minus(7, DAYS));
+        DomainEvent raisedTooEarly = createdEvent(actor, now().minus(11, DAYS));
+        DomainEvent raisedTooLate = createdEvent(actor, raisedTo);
+        List<Object> values = new ArrayList<>(List.of(matched, otherType, otherOrg, raisedTooEarly, raisedTooLate));
+        values.add(null); // Failed to be deserialized
+        dltContains(values);
+
+        DomainEventReplayProgress progress = replayer.start(ReplayDomainEventsCommand.builder()
+                .maxPerSecond(1000)
+                .types(Set.of(EQUIPMENT_CREATED_EVENT))
+                .arOrgId(actor.getOrgId())
+                .raisedFrom(raisedFrom)
+                .raisedTo(raisedTo)
+                .build());
+
+        Mockito.verify(eventConsumer).consumeDomainEvent(matched);
+        Mockito.verifyNoMoreInteractions(eventConsumer);
+        DomainEventReplayProgress finished = replayer.progress();
+        assertEquals(progress.id(), finished.id());
+        assertEquals(COMPLETED, finished.status());
+        assertEquals(6, finished.total());
+        assertEquals(6, finished.scanned());
+        assertEquals(1, finished.replayed());
+        assertEquals(4, finished.filtered());
+        assertEquals(1, finished.failed());
+    }
+
+    @Test
+    void should_count_domain_events_failed_to_be_consumed_and_continue_replaying() {
+        OrgActor actor = randomHumanUserOrgActor(ORG_ADMIN);
+        DomainEvent failedEvent = createdEvent(actor, now());
+        DomainEvent event = createdEvent(actor, now());
+        dltContains(List.of(failedEvent, event));
+        Mockito.doThrow(new RuntimeException("stub exception")).when(eventConsumer).consumeDomainEvent(failedEvent);
+
+        replayer.start(ReplayDomainEventsCommand.builder().maxPerSecond(1000).build());
+
+        Mockito.verify(eventConsumer).consumeDomainEvent(event);
+        DomainEventReplayProgress finished = replayer.progress();
+        assertEquals(COMPLETED, finished.status());
+        assertEquals(1, finished.replayed());
+        assertEquals(1, finished.failed());
+    }
+
+    @Test
+    void should_limit_replay_rate_to_max_per_second() {
+        OrgActor actor = randomHumanUserOrgActor(ORG_ADMIN);
+        dltContains(IntStream.range(0, 11).mapToObj(_ -> (Object) createdEvent(actor, now())).toList());
+
+        long startedAt = nanoTime();
+        replayer.start(ReplayDomainEventsCommand.builder().maxPerSecond(10).build());
+        long elapsedMillis = NANOSECONDS.toMillis(nanoTime() - startedAt);
+
+        assertEquals(11, replayer.progress().replayed());
+        assertTrue(elapsedMillis >= 900, "11 events at 10 per second should take about 1 second, but took " + elapsedMillis + "ms.");
+    }
+
+    // Records are added on the first poll as MockConsumer only accepts records of assigned partitions
+    private void dltContains(List<Object> values) {
+        consumer.updateEndOffsets(Map.of(PARTITION, (long) values.size()));
+        consumer.schedulePollTask(() -> IntStream.range(0, values.size()).forEach(offset ->
+                consumer.addRecord(new ConsumerRecord<>(DLT_TOPIC, 0, offset, "key-" + offset, values.get(offset)))));
+    }
+
+    private static DomainEvent createdEvent(OrgActor actor, Instant raisedAt) {
+        return raisedAt(new EquipmentCreatedEvent(new Equipment(randomEquipmentName(), actor), actor), raisedAt);
+    }
+
+    private static DomainEvent raisedAt(DomainEvent event, Instant raisedAt) {
+        ReflectionTestUtils.setField(event, DomainEvent.Fields.raisedAt, raisedAt);
+        return event;
+    }
+
+    // MockConsumer does not support offsetsForTimes(), seek to the beginning so that raisedFrom is also checked per event
+    private static class DltConsumer extends MockConsumer<Object, Object> {
+        private DltConsumer() {
+            super("earliest");
+        }
+
+        @Override
+        public synchronized Map<TopicPartition, OffsetAndTimestamp> offsetsForTimes(Map<TopicPartition, Long> timestampsToSearch) {
+            return Map.of(PARTITION, new OffsetAndTimestamp(0, timestampsToSearch.get(PARTITION)));
+        }
+    }
+}
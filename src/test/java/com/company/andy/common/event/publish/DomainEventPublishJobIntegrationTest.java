@@ -2,22 +2,34 @@ package com.company.andy.common.event.publish;
 
 import com.company.andy.IntegrationTest;
 import com.company.andy.TestFixture;
+import com.company.andy.common.event.DomainEvent;
 import com.company.andy.common.model.actor.OrgActor;
 import com.company.andy.feature.equipment.command.CreateEquipmentCommand;
 import com.company.andy.feature.equipment.command.EquipmentCommandService;
+import com.company.andy.feature.equipment.domain.Equipment;
 import com.company.andy.feature.equipment.domain.event.EquipmentCreatedEvent;
 import com.company.andy.support.TestingDomainEventSender;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.parallel.Execution;
 import org.junit.jupiter.api.parallel.ExecutionMode;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
 import static com.company.andy.common.event.DomainEventType.EQUIPMENT_CREATED_EVENT;
 import static com.company.andy.common.event.publish.DomainEventPublishStatus.*;
 import static com.company.andy.common.model.OrgRole.ORG_ADMIN;
 import static com.company.andy.feature.equipment.EquipmentTestFixture.randomEquipmentName;
+import static com.company.andy.support.PollingAssertion.pollAssert;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.junit.jupiter.api.parallel.ExecutionMode.SAME_THREAD;
 
 @Execution(SAME_THREAD)
@@ -35,6 +47,12 @@ class DomainEventPublishJobIntegrationTest extends IntegrationTest {
     @Autowired
     private TestingDomainEventSender domainEventSender;
 
+    @Autowired
+    private DomainEventOutboxMetrics domainEventOutboxMetrics;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @Test
     void should_publish_domain_events() {
         OrgActor actor = TestFixture.randomHumanUserOrgActor(ORG_ADMIN);
@@ -112,4 +130,74 @@ class DomainEventPublishJobIntegrationTest extends IntegrationTest {
         assertEquals(PUBLISH_SUCCEED, publishingDomainEvent2.getStatus());
         assertEquals(2, publishingDomainEvent2.getPublishedCount());
     }
-}
\ No newline at end of file
+
+    @Test
+    void should_acknowledge_all_published_domain_events_in_batches() {
+        OrgActor actor = TestFixture.randomHumanUserOrgActor(ORG_ADMIN);
+        List<DomainEvent> events = IntStream.range(0, 1200)
+                .mapToObj(_ -> (DomainEvent) new EquipmentCreatedEvent(new Equipment(randomEquipmentName(), actor), actor))
+                .toList();
+        publishingDomainEventDao.stage(events);
+
+        domainEventPublishJob.publishStagedDomainEvents(500);
+
+        events.forEach(event -> {
+            PublishingDomainEvent publishingDomainEvent = publishingDomainEventDao.byId(event.getId());
+            assertEquals(PUBLISH_SUCCEED, publishingDomainEvent.getStatus());
+            assertEquals(1, publishingDomainEvent.getPublishedCount());
+        });
+    }
+
+    @Test
+    void should_acknowledge_last_partial_batch_without_more_results() {
+        OrgActor actor = TestFixture.randomHumanUserOrgActor(ORG_ADMIN);
+        EquipmentCreatedEvent sentEvent = new EquipmentCreatedEvent(new Equipment(randomEquipmentName(), actor), actor);
+        EquipmentCreatedEvent slowEvent = new EquipmentCreatedEvent(new Equipment(randomEquipmentName(), actor), actor);
+        publishingDomainEventDao.stage(List.of(sentEvent, slowEvent));
+        domainEventSender.holdFor(slowEvent.getId());
+
+        CompletableFuture<Void> publishing = CompletableFuture.runAsync(() -> domainEventPublishJob.publishStagedDomainEvents(500));
+        try {
+            pollAssert().run(() -> assertEquals(PUBLISH_SUCCEED, publishingDomainEventDao.byId(sentEvent.getId()).getStatus()));
+            assertEquals(CREATED, publishingDomainEventDao.byId(slowEvent.getId()).getStatus());
+        } finally {
+            domainEventSender.release(slowEvent.getId());
+            publishing.join();
+        }
+
+        assertEquals(PUBLISH_SUCCEED, publishingDomainEventDao.byId(slowEvent.getId()).getStatus());
+    }
+
+    @Test
+    void should_split_staged_domain_events_into_shards_by_aggregate() {
+        OrgActor actor = TestFixture.randomHumanUserOrgActor(ORG_ADMIN);
+        List<DomainEvent> events = IntStream.range(0, 8)
+                .mapToObj(_ -> new Equipment(randomEquipmentName(), actor))
+                .flatMap(equipment -> IntStream.range(0, 2).mapToObj(_ -> (DomainEvent) new EquipmentCreatedEvent(equipment, actor)))
+                .toList();
+        publishingDomainEventDao.stage(events);
+
+        Map<String, Integer> shardOfEvents = new HashMap<>();
+        IntStream.range(0, 4).forEach(shard -> publishingDomainEventDao.stagedEvents(shard, 4, null, "EVT", 10000)
+                .forEach(it -> assertNull(shardOfEvents.put(it.getId(), shard))));
+
+        events.forEach(event -> {
+            int expectedShard = (event.getArId().hashCode() & Integer.MAX_VALUE) % 4;
+            assertEquals(expectedShard, shardOfEvents.get(event.getId()));
+        });
+    }
+
+    @Test
+    void should_report_outbox_metrics() {
+        OrgActor actor = TestFixture.randomHumanUserOrgActor(ORG_ADMIN);
+        equipmentCommandService.createEquipment(CreateEquipmentCommand.builder().name(randomEquipmentName()).build(), actor);
+        double publishRuns = meterRegistry.get("domain.event.publish.run.events").summary().count();
+
+        domainEventOutboxMetrics.refresh();
+        assertTrue(meterRegistry.get("domain.event.outbox.staged").tag("status", CREATED.name()).gauge().value() >= 1);
+        assertTrue(meterRegistry.get("domain.event.outbox.oldest.staged.age").timeGauge().value(MILLISECONDS) >= 0);
+
+        domainEventPublishJob.publishStagedDomainEvents(500);
+        assertTrue(meterRegistry.get("domain.event.publish.run.events").summary().count() > publishRuns);
+    }
+}
@@ -0,0 +1,109 @@
+package com.company.andy.common.event.publish;
+
+import com.company.andy.IntegrationTest;
+import com.company.andy.common.event.DomainEvent;
+import com.company.andy.common.model.actor.OrgActor;
+import com.company.andy.feature.equipment.domain.Equipment;
+import com.company.andy.feature.equipment.domain.event.EquipmentCreatedEvent;
+import com.company.andy.support.TestingDomainEventSender;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static com.company.andy.TestFixture.randomHumanUserOrgActor;
+import static com.company.andy.common.event.publish.DomainEventPublishStatus.CREATED;
+import static com.company.andy.common.event.publish.DomainEventPublishStatus.PUBLISH_SUCCEED;
+import static com.company.andy.common.model.OrgRole.ORG_ADMIN;
+import static com.company.andy.common.utils.Constants.MONGO_ID;
+import static com.company.andy.feature.equipment.EquipmentTestFixture.randomEquipmentName;
+import static java.time.Instant.now;
+import static java.time.temporal.ChronoUnit.MINUTES;
+import static java.time.temporal.ChronoUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.parallel.ExecutionMode.SAME_THREAD;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+@Execution(SAME_THREAD)
+@TestPropertySource(properties = "common.event-publish.direct-handoff=true")
+class DomainEventPublishTakeoverIntegrationTest extends IntegrationTest {
+
+    @Autowired
+    private DomainEventPublishJob domainEventPublishJob;
+
+    @Autowired
+    private PublishingDomainEventDao publishingDomainEventDao;
+
+    @Autowired
+    private TestingDomainEventSender domainEventSender;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void should_not_take_over_recently_staged_domain_events_even_if_raised_long_ago() {
+        OrgActor actor = randomHumanUserOrgActor(ORG_ADMIN);
+        EquipmentCreatedEvent event = new EquipmentCreatedEvent(new Equipment(randomEquipmentName(), actor), actor);
+        ReflectionTestUtils.setField(event, DomainEvent.Fields.raisedAt, now().minus(5, MINUTES)); // Raised early in a long transaction
+        publishingDomainEventDao.stage(List.of(event));
+
+        domainEventPublishJob.publishStagedDomainEvents(500);
+
+        assertEquals(CREATED, publishingDomainEventDao.byId(event.getId()).getStatus());
+        assertFalse(domainEventSender.getEvents().containsKey(event.getId()));
+    }
+
+    @Test
+    void should_not_take_over_domain_events_of_transaction_outliving_handoff_grace_period() {
+        OrgActor actor = randomHumanUserOrgActor(ORG_ADMIN);
+        EquipmentCreatedEvent event = new EquipmentCreatedEvent(new Equipment(randomEquipmentName(), actor), actor);
+        new TransactionTemplate(transactionManager).executeWithoutResult(_ -> {
+            publishingDomainEventDao.stage(List.of(event));
+            // The staging transaction commits 30 seconds after the event is inserted, longer than HANDOFF_GRACE_PERIOD
+            mongoTemplate.updateFirst(query(where(MONGO_ID).is(event.getId())),
+                    new Update().set(PublishingDomainEvent.Fields.stagedAt, now().minus(30, SECONDS)), PublishingDomainEvent.class);
+        });
+
+        domainEventPublishJob.publishStagedDomainEvents(500);
+
+        assertEquals(CREATED, publishingDomainEventDao.byId(event.getId()).getStatus());
+        assertFalse(domainEventSender.getEvents().containsKey(event.getId()));
+    }
+
+    @Test
+    void should_take_over_domain_events_left_behind_by_direct_handoff() {
+        OrgActor actor = randomHumanUserOrgActor(ORG_ADMIN);
+        EquipmentCreatedEvent event = new EquipmentCreatedEvent(new Equipment(randomEquipmentName(), actor), actor);
+        publishingDomainEventDao.stage(List.of(event));
+        mongoTemplate.updateFirst(query(where(MONGO_ID).is(event.getId())),
+                new Update().set(PublishingDomainEvent.Fields.stagedAt, now().minus(5, MINUTES)), PublishingDomainEvent.class);
+
+        domainEventPublishJob.publishStagedDomainEvents(500);
+
+        assertEquals(PUBLISH_SUCCEED, publishingDomainEventDao.byId(event.getId()).getStatus());
+        assertTrue(domainEventSender.getEvents().containsKey(event.getId()));
+    }
+
+    @Test
+    void should_take_over_domain_events_staged_without_staged_time() {
+        OrgActor actor = randomHumanUserOrgActor(ORG_ADMIN);
+        EquipmentCreatedEvent event = new EquipmentCreatedEvent(new Equipment(randomEquipmentName(), actor), actor);
+        publishingDomainEventDao.stage(List.of(event));
+        mongoTemplate.updateFirst(query(where(MONGO_ID).is(event.getId())),
+                new Update().unset(PublishingDomainEvent.Fields.stagedAt), PublishingDomainEvent.class);
+
+        domainEventPublishJob.publishStagedDomainEvents(500);
+
+        assertEquals(PUBLISH_SUCCEED, publishingDomainEventDao.byId(event.getId()).getStatus());
+        assertTrue(domainEventSender.getEvents().containsKey(event.getId()));
+    }
+}
@@ -0,0 +1,98 @@
+package com.company.andy.common.event.publish;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static com.company.andy.common.event.publish.DomainEventPublishTrigger.MAX_DELAY;
+import static com.company.andy.common.event.publish.DomainEventPublishTrigger.QUIET_PERIOD;
+import static com.company.andy.support.PollingAssertion.pollAssert;
+import static java.lang.System.nanoTime;
+import static java.time.Duration.ofMillis;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(MockitoExtension.class)
+class DomainEventPublishTriggerTest {
+    private static final Duration TOLERANCE = ofMillis(150);
+
+    @Mock
+    private DomainEventPublishJob domainEventPublishJob;
+
+    private final List<Long> runStartedAt = new CopyOnWriteArrayList<>();
+
+    private DomainEventPublishTrigger trigger;
+
+    @BeforeEach
+    void setUp() {
+        trigger = new DomainEventPublishTrigger(domainEventPublishJob, new SimpleAsyncTaskExecutor(), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void should_coalesce_burst_of_triggers_into_one_publish_run() throws InterruptedException {
+        recordRuns(null);
+
+        for (int i = 0; i < 1000; i++) {
+            trigger.trigger();
+        }
+
+        pollAssert().run(() -> assertEquals(1, runStartedAt.size()));
+        Thread.sleep(MAX_DELAY.plus(TOLERANCE));
+        assertEquals(1, runStartedAt.size());
+    }
+
+    @Test
+    void should_start_publish_run_no_later_than_max_delay_for_continuous_triggers() throws InterruptedException {
+        recordRuns(null);
+
+        long firstTriggeredAt = nanoTime();
+        long stopAt = firstTriggeredAt + MAX_DELAY.multipliedBy(3).toNanos();
+        while (nanoTime() < stopAt) {
+            trigger.trigger();
+            Thread.sleep(QUIET_PERIOD.dividedBy(4)); // Never quiet long enough
+        }
+
+        pollAssert().run(() -> assertTrue(runStartedAt.size() >= 1));
+        assertTrue(runStartedAt.getFirst() - firstTriggeredAt <= MAX_DELAY.plus(TOLERANCE).toNanos());
+        assertTrue(runStartedAt.size() <= 4); // One run per MAX_DELAY window at most plus a rerun for the last triggers
+    }
+
+    @Test
+    void should_rerun_only_once_for_triggers_arriving_during_publish_run() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        recordRuns(release);
+
+        trigger.trigger();
+        pollAssert().run(() -> assertEquals(1, runStartedAt.size()));
+        for (int i = 0; i < 100; i++) {
+            trigger.trigger();
+        }
+        release.countDown();
+
+        pollAssert().run(() -> assertEquals(2, runStartedAt.size()));
+        Thread.sleep(MAX_DELAY.plus(TOLERANCE));
+        assertEquals(2, runStartedAt.size());
+    }
+
+    // Records start time of each publish run, the first run is blocked until released if a latch is given
+    private void recordRuns(CountDownLatch release) {
+        Mockito.doAnswer(_ -> {
+            runStartedAt.add(nanoTime());
+            if (release != null && runStartedAt.size() == 1) {
+                release.await(5, SECONDS);
+            }
+            return null;
+        }).when(domainEventPublishJob).publishStagedDomainEvents(Mockito.anyInt());
+    }
+}
@@ -8,8 +8,12 @@ import com.company.andy.feature.equipment.domain.EquipmentFactory;
 import com.company.andy.feature.equipment.domain.EquipmentRepository;
 import com.company.andy.feature.equipment.domain.event.EquipmentCreatedEvent;
 import com.company.andy.feature.equipment.domain.event.EquipmentDeletedEvent;
+import org.bson.Document;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
 
@@ -17,11 +21,16 @@ import static com.company.andy.TestFixture.randomHumanUserOrgActor;
 import static com.company.andy.common.event.DomainEventType.EQUIPMENT_CREATED_EVENT;
 import static com.company.andy.common.event.DomainEventType.EQUIPMENT_DELETED_EVENT;
 import static com.company.andy.common.exception.ErrorCode.AR_NOT_FOUND;
+import static com.company.andy.common.exception.ErrorCode.CONFLICT;
 import static com.company.andy.common.exception.ErrorCode.NOT_SAME_ORG;
 import static com.company.andy.common.model.OrgRole.ORG_ADMIN;
+import static com.company.andy.common.utils.Constants.MONGO_ID;
 import static com.company.andy.feature.equipment.EquipmentTestFixture.randomEquipmentName;
+import static com.company.andy.feature.equipment.domain.Equipment.EQUIPMENT_COLLECTION;
 import static org.apache.commons.lang3.RandomStringUtils.secure;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
 
 class AbstractMongoRepositoryIntegrationTest extends IntegrationTest {
 
@@ -31,6 +40,15 @@ class AbstractMongoRepositoryIntegrationTest extends IntegrationTest {
     @Autowired
     private EquipmentRepository equipmentRepository;
 
+    @Autowired
+    private TestingIdentityMapEquipmentRepository identityMapEquipmentRepository;
+
+    @Autowired
+    private TestingPartialUpdateEquipmentRepository partialUpdateEquipmentRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
     @Test
     void should_save_ar() {
         OrgActor actor = randomHumanUserOrgActor(ORG_ADMIN);
@@ -63,6 +81,47 @@ class AbstractMongoRepositoryIntegrationTest extends IntegrationTest {
         assertEquals(equipment2.getId(), createdEvent2.getEquipmentId());
     }
 
+    @Test
+    void should_update_ars_in_bulk() {
+        OrgActor actor = randomHumanUserOrgActor(ORG_ADMIN);
+        Equipment equipment1 = equipmentFactory.create(randomEquipmentName(), actor);
+        Equipment equipment2 = equipmentFactory.create(randomEquipmentName(), actor);
+        equipmentRepository.save(List.of(equipment1, equipment2));
+
+        String newName = randomEquipmentName();
+        equipment1.updateName(newName, actor);
+        equipment2.updateName(newName, actor);
+        equipmentRepository.save(List.of(equipment1, equipment2));
+        equipmentRepository.save(List.of(equipment1, equipment2));
+
+        assertEquals(newName, equipmentRepository.byId(equipment1.getId()).getName());
+        assertEquals(newName, equipmentRepository.byId(equipment2.getId()).getName());
+    }
+
+    @Test
+    void should_throw_conflict_if_ars_are_modified_by_others_when_saving_in_bulk() {
+        OrgActor actor = randomHumanUserOrgActor(ORG_ADMIN);
+        Equipment equipment1 = equipmentFactory.create(randomEquipmentName(), actor);
+        Equipment equipment2 = equipmentFactory.create(randomEquipmentName(), actor);
+        equipmentRepository.save(List.of(equipment1, equipment2));
+
+        Equipment staleEquipment1 = equipmentRepository.byId(equipment1.getId());
+        Equipment otherEquipment1 = equipmentRepository.byId(equipment1.getId());
+        otherEquipment1.updateName(randomEquipmentName(), actor);
+        equipmentRepository.save(otherEquipment1);
+
+        Equipment loadedEquipment2 = equipmentRepository.byId(equipment2.getId());
+        String newName = randomEquipmentName();
+        staleEquipment1.updateName(newName, actor);
+        loadedEquipment2.updateName(newName, actor);
+        ServiceException exception = assertThrows(ServiceException.class,
+                () -> equipmentRepository.save(List.of(staleEquipment1, loadedEquipment2)));
+
+        assertEquals(CONFLICT, exception.getCode());
+        assertEquals(otherEquipment1.getName(), equipmentRepository.byId(equipment1.getId()).getName());
+        assertNotEquals(newName, equipmentRepository.byId(equipment2.getId()).getName());
+    }
+
     @Test
     void should_throw_exception_if_not_the_same_org() {
         Equipment equipment1 = equipmentFactory.create(randomEquipmentName(), randomHumanUserOrgActor(ORG_ADMIN));
@@ -143,4 +202,124 @@ class AbstractMongoRepositoryIntegrationTest extends IntegrationTest {
         assertFalse(equipmentRepository.byIdOptional(secure().nextAlphanumeric(5)).isPresent());
         assertFalse(equipmentRepository.byIdOptional(secure().nextAlphanumeric(5), secure().nextAlphanumeric(5)).isPresent());
     }
-}
\ No newline at end of file
+
+    @Test
+    void should_not_fetch_ar_of_other_org() {
+        OrgActor actor = randomHumanUserOrgActor(ORG_ADMIN);
+        Equipment equipment = equipmentFactory.create(randomEquipmentName(), actor);
+        equipmentRepository.save(equipment);
+        String otherOrgId = randomHumanUserOrgActor(ORG_ADMIN).getOrgId();
+
+        assertEquals(AR_NOT_FOUND, assertThrows(ServiceException.class,
+                () -> equipmentRepository.byId(equipment.getId(), otherOrgId)).getCode());
+        assertFalse(equipmentRepository.byIdOptional(equipment.getId(), otherOrgId).isPresent());
+        assertFalse(equipmentRepository.exists(equipment.getId(), otherOrgId));
+    }
+
+    @Test
+    void should_fetch_ars_by_ids_in_given_order() {
+        OrgActor actor = randomHumanUserOrgActor(ORG_ADMIN);
+        Equipment equipment1 = equipmentFactory.create(randomEquipmentName(), actor);
+        Equipment equipment2 = equipmentFactory.create(randomEquipmentName(), actor);
+        Equipment equipment3 = equipmentFactory.create(randomEquipmentName(), actor);
+        equipmentRepository.save(List.of(equipment1, equipment2, equipment3));
+
+        List<String> ids = List.of(equipment3.getId(), equipment1.getId(), equipment2.getId(), equipment1.getId());
+        assertEquals(List.of(equipment3.getId(), equipment1.getId(), equipment2.getId()),
+                equipmentRepository.byIds(ids).stream().map(Equipment::getId).toList());
+        assertEquals(List.of(equipment3.getId(), equipment1.getId(), equipment2.getId()),
+                equipmentRepository.byIds(ids, actor.getOrgId()).stream().map(Equipment::getId).toList());
+        assertTrue(equipmentRepository.byIds(List.of()).isEmpty());
+    }
+
+    @Test
+    void should_report_missing_ids_when_fetching_ars_by_ids() {
+        OrgActor actor = randomHumanUserOrgActor(ORG_ADMIN);
+        Equipment equipment = equipmentFactory.create(randomEquipmentName(), actor);
+        equipmentRepository.save(equipment);
+        String missingId = secure().nextAlphanumeric(5);
+
+        ServiceException exception = assertThrows(ServiceException.class,
+                () -> equipmentRepository.byIds(List.of(equipment.getId(), missingId)));
+        assertEquals(AR_NOT_FOUND, exception.getCode());
+        assertEquals(List.of(missingId), exception.getData().get("ids"));
+
+        ServiceException otherOrgException = assertThrows(ServiceException.class,
+                () -> equipmentRepository.byIds(List.of(equipment.getId()), secure().nextAlphanumeric(5)));
+        assertEquals(List.of(equipment.getId()), otherOrgException.getData().get("ids"));
+    }
+
+    @Test
+    void should_return_same_instance_within_transaction_if_identity_map_enabled() {
+        OrgActor actor = randomHumanUserOrgActor(ORG_ADMIN);
+        Equipment equipment = equipmentFactory.create(randomEquipmentName(), actor);
+        equipmentRepository.save(equipment);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(_ -> {
+            Equipment loaded = identityMapEquipmentRepository.byId(equipment.getId());
+            assertSame(loaded, identityMapEquipmentRepository.byId(equipment.getId()));
+            assertSame(loaded, identityMapEquipmentRepository.byId(equipment.getId(), actor.getOrgId()));
+            assertSame(loaded, identityMapEquipmentRepository.byIds(List.of(equipment.getId())).get(0));
+            assertFalse(identityMapEquipmentRepository.byIdOptional(equipment.getId(), secure().nextAlphanumeric(5)).isPresent());
+
+            String newName = randomEquipmentName();
+            loaded.updateName(newName, actor);
+            identityMapEquipmentRepository.save(loaded);
+            assertSame(loaded, identityMapEquipmentRepository.byId(equipment.getId()));
+
+            identityMapEquipmentRepository.delete(loaded);
+            assertFalse(identityMapEquipmentRepository.byIdOptional(equipment.getId()).isPresent());
+        });
+
+        assertFalse(equipmentRepository.byIdOptional(equipment.getId()).isPresent());
+    }
+
+    @Test
+    void should_load_new_instance_without_transaction_even_if_identity_map_enabled() {
+        OrgActor actor = randomHumanUserOrgActor(ORG_ADMIN);
+        Equipment equipment = equipmentFactory.create(randomEquipmentName(), actor);
+        equipmentRepository.save(equipment);
+
+        assertNotSame(identityMapEquipmentRepository.byId(equipment.getId()), identityMapEquipmentRepository.byId(equipment.getId()));
+    }
+
+    @Test
+    void should_only_update_changed_fields_if_partial_update_enabled() {
+        OrgActor actor = randomHumanUserOrgActor(ORG_ADMIN);
+        Equipment equipment = equipmentFactory.create(randomEquipmentName(), actor);
+        equipmentRepository.save(equipment);
+
+        Equipment loaded = partialUpdateEquipmentRepository.byId(equipment.getId());
+        // Fields unknown to the AR are kept by partial update but would be dropped by replacing the whole document
+        mongoTemplate.updateFirst(query(where(MONGO_ID).is(equipment.getId())), new Update().set("unknownField", "value"), EQUIPMENT_COLLECTION);
+        String newName = randomEquipmentName();
+        loaded.updateName(newName, actor);
+        partialUpdateEquipmentRepository.save(loaded);
+
+        Document document = mongoTemplate.findById(equipment.getId(), Document.class, EQUIPMENT_COLLECTION);
+        assertEquals(newName, document.getString(Equipment.Fields.name));
+        assertEquals("value", document.getString("unknownField"));
+        assertEquals(1L, document.getLong("_version"));
+
+        String anotherName = randomEquipmentName();
+        loaded.updateName(anotherName, actor);
+        partialUpdateEquipmentRepository.save(loaded);
+        assertEquals(anotherName, equipmentRepository.byId(equipment.getId()).getName());
+    }
+
+    @Test
+    void should_throw_conflict_for_stale_ar_if_partial_update_enabled() {
+        OrgActor actor = randomHumanUserOrgActor(ORG_ADMIN);
+        Equipment equipment = equipmentFactory.create(randomEquipmentName(), actor);
+        equipmentRepository.save(equipment);
+
+        Equipment stale = partialUpdateEquipmentRepository.byId(equipment.getId());
+        Equipment other = partialUpdateEquipmentRepository.byId(equipment.getId());
+        other.updateName(randomEquipmentName(), actor);
+        partialUpdateEquipmentRepository.save(other);
+
+        stale.updateName(randomEquipmentName(), actor);
+        assertEquals(CONFLICT, assertThrows(ServiceException.class, () -> partialUpdateEquipmentRepository.save(stale)).getCode());
+        assertEquals(other.getName(), equipmentRepository.byId(equipment.getId()).getName());
+    }
+}
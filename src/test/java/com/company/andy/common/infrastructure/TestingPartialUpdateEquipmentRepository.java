@@ -0,0 +1,13 @@
+package com.company.andy.common.infrastructure;
+
+import com.company.andy.common.mongo.AbstractMongoRepository;
+import com.company.andy.feature.equipment.domain.Equipment;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class TestingPartialUpdateEquipmentRepository extends AbstractMongoRepository<Equipment> {
+    @Override
+    protected boolean usePartialUpdate() {
+        return true;
+    }
+}
@@ -100,4 +100,23 @@ public class SecurityIntegrationTest extends IntegrationTest {
                 .body(randomCreateEquipmentCommand())
                 .exchange().expectStatus().isUnauthorized();
     }
+
+    @Test
+    void system_admin_should_read_metrics_from_actuator() {
+        restTestClient.get()
+                .uri("/actuator/metrics").headers(authHeaderOf(randomHumanUserSystemActor()))
+                .exchange().expectStatus().isOk()
+                .expectBody().jsonPath("$.names").isArray();
+
+        restTestClient.get()
+                .uri("/actuator/metrics/domain.event.outbox.staged").headers(authHeaderOf(randomHumanUserSystemActor()))
+                .exchange().expectStatus().isOk();
+    }
+
+    @Test
+    void should_throw_403_error_if_org_actor_reads_metrics_from_actuator() {
+        restTestClient.get()
+                .uri("/actuator/metrics").headers(authHeaderOf(randomHumanUserOrgActor(ORG_ADMIN)))
+                .exchange().expectStatus().isForbidden();
+    }
 }
@@ -26,6 +26,7 @@ import java.util.concurrent.ConcurrentHashMap;
 public class TestingDomainEventSender implements DomainEventSender {
     private final Map<String, PublishingDomainEvent> events = new ConcurrentHashMap<>();
     private final Set<String> errorEventIds = new HashSet<>();
+    private final Map<String, CompletableFuture<String>> heldEvents = new ConcurrentHashMap<>();
 
     @Override
     public CompletableFuture<String> send(PublishingDomainEvent publishingDomainEvent) {
@@ -34,7 +35,8 @@ public class TestingDomainEventSender implements DomainEventSender {
         }
 
         this.events.put(publishingDomainEvent.getId(), publishingDomainEvent);
-        return CompletableFuture.completedFuture(publishingDomainEvent.getId());
+        CompletableFuture<String> held = this.heldEvents.get(publishingDomainEvent.getId());
+        return held != null ? held : CompletableFuture.completedFuture(publishingDomainEvent.getId());
     }
 
     public void throwExceptionFor(String eventId) {
@@ -44,4 +46,16 @@ public class TestingDomainEventSender implements DomainEventSender {
     public void removeExceptionFor(String eventId) {
         this.errorEventIds.remove(eventId);
     }
+
+    // Simulates a slow broker, sending of the event is not completed until released
+    public void holdFor(String eventId) {
+        this.heldEvents.put(eventId, new CompletableFuture<>());
+    }
+
+    public void release(String eventId) {
+        CompletableFuture<String> held = this.heldEvents.remove(eventId);
+        if (held != null) {
+            held.complete(eventId);
+        }
+    }
 }